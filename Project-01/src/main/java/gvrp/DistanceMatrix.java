@@ -1,6 +1,5 @@
 package gvrp;
 
-import java.util.List;
 import java.util.StringJoiner;
 import java.util.function.Predicate;
 
@@ -8,40 +7,52 @@ public class DistanceMatrix {
 
 	int [][] matrix;
 	
-	public DistanceMatrix(List<Customer> customers, Point depot) {
-		int biggestId = 0;
-		for (Customer c : customers) {
-			int cId = c.getId();
-			if (cId > biggestId)
-				biggestId = cId;
-		}
-		int dimension = biggestId + 1; 
+	/**
+	 * Computes the distances between every pair of customers (the
+	 * depot has id 0) from the coordinates of the instance arrays
+	 * @param arrays - instance arrays
+	 */
+	public DistanceMatrix(InstanceArrays arrays) {
+		int [] x = arrays.x, y = arrays.y;
+		int dimension = x.length;
 		matrix = new int[dimension][dimension];
-		for (Customer ci : customers) {
-			setDistanceToDepot(ci, depot);
-			for (Customer cj : customers) {
-				setDistance(ci, cj);
-			}
+		for (int i = 0; i < dimension; i++) {
+			int [] row = matrix[i];
+			for (int j = 0; j < i; j++)
+				row[j] = matrix[j][i] = Point.distance(x[i], y[i], x[j], y[j]);
 		}
 	}
-		
-	private void setDistanceToDepot(Customer c, Point depot) {
-		int id = c.getId();
-		int dist = c.distanceFrom(depot);
-		matrix[id][0] = matrix[0][id] = dist;
-	}
 	
-	private void setDistance(Customer ci, Customer cj) {
-		int iid = ci.getId();
-		int jid = cj.getId();
-		int dist = ci.distanceFrom(cj);
-		matrix[iid][jid] = matrix[jid][iid] = dist;
+	/**
+	 * Uses precomputed distances
+	 * @param matrix - distances between every pair of customers, indexed by id
+	 */
+	DistanceMatrix(int [][] matrix) {
+		this.matrix = matrix;
 	}
 	
 	public int getDistanceBetween(Customer ci, Customer cj) {
 		return matrix[ci.getId()][cj.getId()];
 	}
 	
+	/**
+	 * @param i - customer id (0 for the depot)
+	 * @param j - another customer id (0 for the depot)
+	 * @return distance between both
+	 */
+	public int getDistance(int i, int j) {
+		return matrix[i][j];
+	}
+	
+	/**
+	 * @param i - customer id (0 for the depot)
+	 * @return distances from the customer to every other one, indexed by id
+	 * (must not be modified)
+	 */
+	public int [] getRow(int i) {
+		return matrix[i];
+	}
+	
 	public int getDistanceFromDepot(Customer c) {
 		return matrix[0][c.getId()];
 	}
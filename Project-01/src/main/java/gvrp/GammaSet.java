@@ -1,55 +1,105 @@
 package gvrp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.StringJoiner;
-import java.util.TreeSet;
 
 /**
  * The gamma set is a set that contains the closest k vertices
  * of a given vertex set in a graph
  * 
+ * It also contains the closest k customer sets of each customer set,
+ * by the minimum distance between their customers
+ * 
  * @author guidanoli
  *
  */
 public class GammaSet {
 	
 	HashMap<Customer, ArrayList<Customer>> map = new HashMap<>();
+	ArrayList<ArrayList<CustomerSet>> setMap = new ArrayList<>(); /* indexed by set id */
 	
 	public GammaSet(Instance instance, int k, boolean showGamma) {
 		ArrayList<Customer> customers = instance.getCustomers();
 		int n = instance.getNumberOfCustomers();
 		DistanceMatrix dmatrix = instance.getDistancematrix();
+		ArrayList<CustomerSet> sets = instance.getSets();
+		int m = sets.size();
+		long [] keys = new long[Math.max(n, m)];
+		for (int i = 0; i < m; i++) {
+			/* For a given set i, sort the other sets by their distance to it,
+			 * and then by their position in the list of sets
+			 */
+			CustomerSet si = sets.get(i);
+			int numOfKeys = 0;
+			for (int j = 0; j < m; j++)
+				if (i != j) keys[numOfKeys++] = (long) instance.getSetDistance(si, sets.get(j)) << 32 | j;
+			Arrays.sort(keys, 0, numOfKeys);
+			ArrayList<CustomerSet> kClosestSets = new ArrayList<>(Math.min(k, numOfKeys));
+			for (int j = 0; j < Math.min(k, numOfKeys); j++)
+				kClosestSets.add(sets.get((int) keys[j]));
+			while (setMap.size() <= si.getId()) setMap.add(null);
+			setMap.set(si.getId(), kClosestSets);
+		}
 		for (int i = 0; i < n; i++) {
-			/* For a given set i
+			/* For a given customer i, sort the other customers by their
+			 * distance to it, and then by their position in the list
 			 */
 			final Customer ci = customers.get(i);
-			TreeSet<Customer> heap = new TreeSet<>((c1,c2)-> dmatrix.getDistanceBetween(ci, c1)<dmatrix.getDistanceBetween(ci, c2)?-1:1);
-			for (int j = 0; j < n; j++) {
-				/* Add all neighbouring sets to a heap sorted by the
-				 * distance to the set i
-				 */
-				if (i == j) continue;
-				heap.add(customers.get(j));
-			}
-			ArrayList<Customer> kClosestCustomers = new ArrayList<>(k);
-			for (int j = 0; j < k; j++) {
+			int [] row = dmatrix.getRow(ci.getId());
+			int numOfKeys = 0;
+			for (int j = 0; j < n; j++)
+				if (i != j) keys[numOfKeys++] = (long) row[customers.get(j).getId()] << 32 | j;
+			Arrays.sort(keys, 0, numOfKeys);
+			ArrayList<Customer> kClosestCustomers = new ArrayList<>(Math.min(k, numOfKeys));
+			for (int j = 0; j < Math.min(k, numOfKeys); j++) {
 				/* Add the k closest to the map
 				 */
-				if (heap.isEmpty()) break;
-				Customer cj = heap.pollFirst();
-				kClosestCustomers.add(cj);
-			}
-			if (showGamma) {
-				StringJoiner sj = new StringJoiner(", ");
-				for (Customer customer : kClosestCustomers)
-					sj.add(customer.toCompactString());
-				System.out.println("map["+customers.get(i).toCompactString()+"]: ["+sj.toString()+"]");
+				kClosestCustomers.add(customers.get((int) keys[j]));
 			}
+			if (showGamma) print(ci, kClosestCustomers);
 			map.put(customers.get(i), kClosestCustomers);
 		}
 	}
 	
+	/**
+	 * Uses a precomputed gamma set
+	 * @param instance - instance
+	 * @param closestCustomers - ids of the closest customers of each customer, indexed by id
+	 * @param closestSets - ids of the closest sets of each set, indexed by set id
+	 * @param showGamma - display the gamma set
+	 */
+	GammaSet(Instance instance, int [][] closestCustomers, int [][] closestSets, boolean showGamma) {
+		Customer [] customerOf = instance.getArrays().customers;
+		CustomerSet [] setOf = new CustomerSet[closestSets.length];
+		for (CustomerSet set : instance.getSets())
+			setOf[set.getId()] = set;
+		for (CustomerSet set : instance.getSets()) {
+			int [] ids = closestSets[set.getId()];
+			ArrayList<CustomerSet> kClosestSets = new ArrayList<>(ids.length);
+			for (int id : ids)
+				kClosestSets.add(setOf[id]);
+			while (setMap.size() <= set.getId()) setMap.add(null);
+			setMap.set(set.getId(), kClosestSets);
+		}
+		for (Customer c : instance.getCustomers()) {
+			int [] ids = closestCustomers[c.getId()];
+			ArrayList<Customer> kClosestCustomers = new ArrayList<>(ids.length);
+			for (int id : ids)
+				kClosestCustomers.add(customerOf[id]);
+			if (showGamma) print(c, kClosestCustomers);
+			map.put(c, kClosestCustomers);
+		}
+	}
+	
+	private static void print(Customer c, ArrayList<Customer> kClosestCustomers) {
+		StringJoiner sj = new StringJoiner(", ");
+		for (Customer customer : kClosestCustomers)
+			sj.add(customer.toCompactString());
+		System.out.println("map["+c.toCompactString()+"]: ["+sj.toString()+"]");
+	}
+	
 	/**
 	 * Obtains the k closest neighbours of a given customer
 	 * @param reference - reference customer
@@ -59,4 +109,13 @@ public class GammaSet {
 		return map.get(reference);
 	}
 	
+	/**
+	 * Obtains the k closest other sets of a given customer set
+	 * @param reference - reference customer set
+	 * @return list of the k closest customer sets ordered by proximity
+	 */
+	public ArrayList<CustomerSet> getClosestSets(CustomerSet reference) {
+		return setMap.get(reference.getId());
+	}
+	
 }
@@ -1,7 +1,7 @@
 package gvrp;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class Instance {
 
@@ -24,6 +24,11 @@ public class Instance {
 		int vehicleCapacity = 0;
 		int k = 20;
 		boolean showGamma = false;
+		int [][] distances = null;
+		int [][] setDistances = null;
+		int [] depotSetDistances = null;
+		int [][] closestCustomers = null;
+		int [][] closestSets = null;
 		
 		/**
 		 * Constructs the builder
@@ -144,6 +149,33 @@ public class Instance {
 			return this;
 		}
 		
+		/**
+		 * Uses precomputed distances instead of computing them
+		 * @param distances - distances between customers, indexed by id
+		 * @param setDistances - minimum distances between sets, indexed by set id
+		 * @param depotSetDistances - minimum distances from the depot to each set
+		 * @return builder
+		 */
+		public Builder distances(int [][] distances, int [][] setDistances, int [] depotSetDistances) {
+			this.distances = distances;
+			this.setDistances = setDistances;
+			this.depotSetDistances = depotSetDistances;
+			return this;
+		}
+		
+		/**
+		 * Uses a precomputed gamma set instead of computing it
+		 * @param closestCustomers - ids of the closest customers of each customer, indexed by id
+		 * @param closestSets - ids of the closest sets of each set, indexed by set id
+		 * @return builder
+		 * @see GammaSet
+		 */
+		public Builder neighbours(int [][] closestCustomers, int [][] closestSets) {
+			this.closestCustomers = closestCustomers;
+			this.closestSets = closestSets;
+			return this;
+		}
+		
 		/**
 		 * Considers the first customer with no set associated as being the depot
 		 * @return instance object
@@ -175,13 +207,14 @@ public class Instance {
 			}
 			
 			return new Instance(instanceName, depot, customers, customerSets,
-					fleetSize, vehicleCapacity, k, showGamma);
+					fleetSize, vehicleCapacity, k, showGamma, this);
 		}
 		
 	}
 	
 	private final String name;
 	private final Point depot;
+	private final InstanceArrays arrays;
 	private final DistanceMatrix dmatrix;
 	private final GammaSet gamma;
 	private final ArrayList<Customer> customers;
@@ -192,6 +225,11 @@ public class Instance {
 	private final int numOfCustomers;
 	private final int k;
 	
+	/* Minimum distances between customers of two sets, and
+	 * between the depot and customers of a set, indexed by set id */
+	private final int [][] setDistances;
+	private final int [] depotSetDistances;
+	
 	/**
 	 * @return maximum number of customers in a gamma set
 	 * @see GammaSet
@@ -223,6 +261,14 @@ public class Instance {
 		return dmatrix;
 	}
 
+	/**
+	 * @return the struct-of-arrays view of the instance
+	 * @see InstanceArrays
+	 */
+	public InstanceArrays getArrays() {
+		return arrays;
+	}
+
 	/**
 	 * @return number of customers
 	 */
@@ -280,28 +326,106 @@ public class Instance {
 	 * @param vCount - vehicle count
 	 * @param vCap - vehicle capacity
 	 * @param k - gamma set size
+	 * @param precomputed - builder with precomputed distances and gamma set, if any
 	 */
-	private Instance(String name, Point depot, ArrayList<Customer> customers, ArrayList<CustomerSet> sets, int vCount, int vCap, int k, boolean showGamma) {
+	private Instance(String name, Point depot, ArrayList<Customer> customers, ArrayList<CustomerSet> sets, int vCount, int vCap, int k, boolean showGamma, Builder precomputed) {
 		this.name = name;
 		this.depot = depot;
 		this.sets = sets;
 		this.fleet = vCount;
 		this.capacity = vCap;
 		this.customers = customers;
-		this.dmatrix = new DistanceMatrix(customers, depot); /* Must be before the gamma set initialisation */
+		this.arrays = new InstanceArrays(customers, sets, depot);
+		/* Must be before the gamma set initialisation */
+		this.dmatrix = precomputed.distances == null ? new DistanceMatrix(arrays) : new DistanceMatrix(precomputed.distances);
 		this.k = k;
 		
 		/* Constant variables */
 		numOfSets = sets.size();
 		numOfCustomers = customers.size();
 		
+		/* Set distances (must be before the gamma set initialisation) */
+		if (precomputed.setDistances != null) {
+			setDistances = precomputed.setDistances;
+			depotSetDistances = precomputed.depotSetDistances;
+		} else {
+			setDistances = computeSetDistances();
+			depotSetDistances = computeDepotSetDistances();
+		}
+		
 		/* Gamma set initialisation */
-		this.gamma = new GammaSet(this, k, showGamma);
+		if (precomputed.closestCustomers != null)
+			this.gamma = new GammaSet(this, precomputed.closestCustomers, precomputed.closestSets, showGamma);
+		else
+			this.gamma = new GammaSet(this, k, showGamma);
+	}
+	
+	/**
+	 * Computes one row per thread
+	 * @return minimum distances between customers of two sets, indexed by set id
+	 */
+	private int [][] computeSetDistances() {
+		int maxSetId = 0;
+		for (CustomerSet set : sets)
+			maxSetId = Math.max(maxSetId, set.getId());
+		int [][] setDistances = new int[maxSetId+1][maxSetId+1];
+		int [] setStart = arrays.setStart, setMembers = arrays.setMembers;
+		IntStream.range(0, numOfSets).parallel().forEach((i) -> {
+			int si = sets.get(i).getId();
+			int [] row = setDistances[si];
+			for (CustomerSet set : sets) {
+				int sj = set.getId();
+				if (si == sj) continue;
+				int distance = Integer.MAX_VALUE;
+				for (int a = setStart[si]; a < setStart[si+1]; a++) {
+					int [] ciRow = dmatrix.getRow(setMembers[a]);
+					for (int b = setStart[sj]; b < setStart[sj+1]; b++)
+						distance = Math.min(distance, ciRow[setMembers[b]]);
+				}
+				row[sj] = distance;
+			}
+		});
+		return setDistances;
+	}
+	
+	/**
+	 * @return minimum distances between the depot and customers of each set, indexed by set id
+	 */
+	private int [] computeDepotSetDistances() {
+		int [] depotSetDistances = new int[setDistances.length];
+		int [] setStart = arrays.setStart, setMembers = arrays.setMembers;
+		int [] depotRow = dmatrix.getRow(0);
+		for (CustomerSet set : sets) {
+			int si = set.getId();
+			int depotDistance = Integer.MAX_VALUE;
+			for (int a = setStart[si]; a < setStart[si+1]; a++)
+				depotDistance = Math.min(depotDistance, depotRow[setMembers[a]]);
+			depotSetDistances[si] = depotDistance;
+		}
+		return depotSetDistances;
+	}
+	
+	/**
+	 * @param si - customer set
+	 * @param sj - another customer set
+	 * @return the minimum distance between customers of both sets
+	 * (0 if they are the same)
+	 */
+	public int getSetDistance(CustomerSet si, CustomerSet sj) {
+		return setDistances[si.getId()][sj.getId()];
+	}
+	
+	/**
+	 * @param set - customer set
+	 * @return the minimum distance between the depot and customers of the set
+	 */
+	public int getDepotSetDistance(CustomerSet set) {
+		return depotSetDistances[set.getId()];
 	}
 	
 	/**
-	 * Parse instance data from scanner
-	 * @param sc - scanner
+	 * Parse instance data from tokenizer
+	 * @param sc - tokenizer
 	 * @param k - gamma set size
 	 * @param showGamma - display gamma set
 	 * @return instance object
@@ -309,44 +433,44 @@ public class Instance {
 	 * @throws IllegalStateException
 	 * @throws InputMismatchException
 	 */
-	public static Instance parse(Scanner sc, int k, boolean showGamma) throws NoSuchElementException, IllegalStateException, InputMismatchException {
+	public static Instance parse(Tokenizer sc, int k, boolean showGamma) throws NoSuchElementException, IllegalStateException, InputMismatchException {
 		Builder builder = new Builder();
-		Pattern colons = Pattern.compile(":");
-		sc.next("NAME"); sc.next(colons);
+		String colons = ":";
+		sc.expect("NAME"); sc.expect(colons);
 		/* Instance name */
 		builder.name(sc.next());
-		sc.next("COMMENT"); sc.next(colons); sc.next("GVRP");
-		sc.next("DIMENSION"); sc.next(colons);
+		sc.expect("COMMENT"); sc.expect(colons); sc.expect("GVRP");
+		sc.expect("DIMENSION"); sc.expect(colons);
 		/* Instance dimension */
 		int dimension = sc.nextInt();
 		if (dimension <= 0) {
 			throw new IllegalStateException("Dimension must be a positive number");
 		}
 		builder.dimension(dimension);
-		sc.next("VEHICLES"); sc.next(colons);
+		sc.expect("VEHICLES"); sc.expect(colons);
 		/* Vehicle count */
 		int vCount = sc.nextInt();
 		if (vCount <= 0) {
 			throw new IllegalStateException("Vehicle count must be a positive number");
 		}
 		builder.fleetSize(vCount);
-		sc.next("GVRP_SETS"); sc.next(colons);
+		sc.expect("GVRP_SETS"); sc.expect(colons);
 		/* Set count */
 		int setCount = sc.nextInt();
 		if (setCount <= 0) {
 			throw new IllegalStateException("Set count must be a positive number");
 		}
 		builder.customerSetCount(setCount);
-		sc.next("CAPACITY"); sc.next(colons);
+		sc.expect("CAPACITY"); sc.expect(colons);
 		/* Vehicle capacity */
 		int vCap = sc.nextInt();
 		if (vCap <= 0) {
 			throw new IllegalStateException("Vehicle capacity must be a positive number");
 		}
 		builder.vehicleCapacity(vCap);
-		sc.next("EDGE_WEIGHT_TYPE"); sc.next(colons); sc.next("EUC_2D");
+		sc.expect("EDGE_WEIGHT_TYPE"); sc.expect(colons); sc.expect("EUC_2D");
 		/* Customer positions */
-		sc.next("NODE_COORD_SECTION");
+		sc.expect("NODE_COORD_SECTION");
 		for (int i = 0; i < dimension; i++) {
 			int id = sc.nextInt();
 			int x = sc.nextInt();
@@ -354,7 +478,7 @@ public class Instance {
 			builder.customerPosition(id, x, y);
 		}
 		/* Customer sets */
-		sc.next("GVRP_SET_SECTION");
+		sc.expect("GVRP_SET_SECTION");
 		for (int i = 0; i < setCount; i++) {
 			int setId = sc.nextInt();
 			int customerId = sc.nextInt();
@@ -364,7 +488,7 @@ public class Instance {
 			}
 		}
 		/* Customer sets demands */
-		sc.next("DEMAND_SECTION");
+		sc.expect("DEMAND_SECTION");
 		for (int i = 0; i < setCount; i++) {
 			int setId = sc.nextInt();
 			int demand = sc.nextInt();
@@ -0,0 +1,84 @@
+package gvrp;
+
+import java.util.List;
+
+/**
+ * <p>Struct-of-arrays view of an instance, built once at parse time, so that
+ * hot loops work on primitive arrays instead of following pointers from
+ * customers to their points and sets, or iterating over hash sets.
+ *
+ * <p>Customers are indexed by id, where the depot has id 0, and customer sets
+ * are indexed by set id. The customers of set s are
+ * {@code setMembers[setStart[s]]} to {@code setMembers[setStart[s+1]-1]},
+ * in the same order in which the set is iterated.
+ */
+public class InstanceArrays {
+
+	/* Coordinates of each customer and the depot */
+	public final int [] x;
+	public final int [] y;
+
+	/* Set of each customer (0 for the depot) and demand of each set */
+	public final int [] setOf;
+	public final int [] demandOfSet;
+
+	/* Customers of each set, in compressed sparse row format */
+	public final int [] setStart;
+	public final int [] setMembers;
+
+	/* Customer objects, for going back from ids */
+	public final Customer [] customers;
+
+	/**
+	 * @param customers - customers, including the depot
+	 * @param sets - customer sets
+	 * @param depot - depot
+	 */
+	public InstanceArrays(List<Customer> customers, List<CustomerSet> sets, Point depot) {
+		int maxId = 0;
+		for (Customer c : customers)
+			maxId = Math.max(maxId, c.getId());
+		int maxSetId = 0;
+		for (CustomerSet set : sets)
+			maxSetId = Math.max(maxSetId, set.getId());
+
+		x = new int[maxId+1];
+		y = new int[maxId+1];
+		setOf = new int[maxId+1];
+		this.customers = new Customer[maxId+1];
+		x[0] = depot.getX();
+		y[0] = depot.getY();
+		for (Customer c : customers) {
+			int id = c.getId();
+			this.customers[id] = c;
+			x[id] = c.getPoint().getX();
+			y[id] = c.getPoint().getY();
+			if (c.getSet() != null)
+				setOf[id] = c.getSet().getId();
+		}
+
+		demandOfSet = new int[maxSetId+1];
+		setStart = new int[maxSetId+2];
+		for (CustomerSet set : sets) {
+			demandOfSet[set.getId()] = set.getDemand();
+			setStart[set.getId()+1] = set.size();
+		}
+		for (int s = 0; s <= maxSetId; s++)
+			setStart[s+1] += setStart[s];
+		setMembers = new int[setStart[maxSetId+1]];
+		for (CustomerSet set : sets) {
+			int i = setStart[set.getId()];
+			for (Customer c : set)
+				setMembers[i++] = c.getId();
+		}
+	}
+
+	/**
+	 * @param id - customer id
+	 * @return demand of the set of the customer
+	 */
+	public int getDemand(int id) {
+		return demandOfSet[setOf[id]];
+	}
+
+}
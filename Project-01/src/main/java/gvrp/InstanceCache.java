@@ -0,0 +1,252 @@
+package gvrp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+/**
+ * <p>Directory of preprocessed instances in a binary format, so that instances
+ * loaded many times are parsed, and have their distances and gamma sets
+ * computed, only the first time. Later loads memory-map the cached file.
+ *
+ * <p>Cached files are named after a hash of the contents of the instance file
+ * and the gamma set size, so editing an instance file never reuses a stale
+ * cache. Cached files that can't be read back, whether truncated or with
+ * contents the instance builder rejects, are deleted and rebuilt.
+ */
+public class InstanceCache {
+
+	static final int MAGIC = 0x47565250; /* "GVRP" */
+	static final int VERSION = 1;
+
+	/* Distances are not cached if the file would exceed this many ints */
+	static final long MAX_INTS = (Integer.MAX_VALUE - 1024) / Integer.BYTES;
+
+	File directory;
+
+	/**
+	 * @param directory - directory of the cached files (created if needed)
+	 */
+	public InstanceCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads an instance from the cache or, if not cached yet, parses the
+	 * instance file and caches it. Failing to write the cache is not an error.
+	 * @param instanceFile - instance file
+	 * @param k - gamma set size
+	 * @param showGamma - display gamma set
+	 * @return instance object
+	 * @throws IOException if the instance file can't be read
+	 * @see Instance#parse
+	 */
+	public Instance load(File instanceFile, int k, boolean showGamma) throws IOException {
+		byte [] content = Files.readAllBytes(instanceFile.toPath());
+		File cacheFile = new File(directory, getKey(content, k) + ".bin");
+		if (cacheFile.isFile()) {
+			Instance instance = read(cacheFile, k, showGamma);
+			if (instance != null) return instance;
+			try {
+				Files.deleteIfExists(cacheFile.toPath());
+			} catch (IOException e) {
+				System.err.println("Could not delete invalid cache " + cacheFile + ": " + e.getMessage());
+			}
+		}
+		Tokenizer sc = new Tokenizer(new ByteArrayInputStream(content));
+		Instance instance = Instance.parse(sc, k, showGamma);
+		sc.close();
+		try {
+			write(instance, cacheFile, k);
+		} catch (IOException e) {
+			System.err.println("Could not cache instance in " + cacheFile + ": " + e.getMessage());
+		}
+		return instance;
+	}
+
+	/**
+	 * @param content - contents of the instance file
+	 * @param k - gamma set size
+	 * @return name of the cached file, without extension
+	 */
+	static String getKey(byte [] content, int k) {
+		byte [] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); /* Every JVM supports SHA-256 */
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 16; i++)
+			sb.append(String.format("%02x", digest[i]));
+		return sb.append("-k").append(k).toString();
+	}
+
+	/**
+	 * Reads a cached instance by memory-mapping its file
+	 * @return instance object or {@code null} if the file is invalid
+	 */
+	static Instance read(File cacheFile, int k, boolean showGamma) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != k)
+				return null;
+			byte [] name = new byte[buffer.getInt()];
+			buffer.get(name);
+			IntBuffer ints = buffer.asIntBuffer();
+
+			/* Coordinates, sets and demands */
+			int dimension = ints.get(), fleet = ints.get(), capacity = ints.get(), setCount = ints.get();
+			Instance.Builder builder = new Instance.Builder()
+					.name(new String(name, StandardCharsets.UTF_8))
+					.dimension(dimension)
+					.fleetSize(fleet)
+					.vehicleCapacity(capacity)
+					.customerSetCount(setCount)
+					.setK(k)
+					.showGamma(showGamma);
+			for (int id = 0; id < dimension; id++) {
+				int x = ints.get(), y = ints.get(), setId = ints.get();
+				builder.customerPosition(id + 1, x, y);
+				if (setId != 0) builder.customerSet(id + 1, setId);
+			}
+			for (int setId = 1; setId <= setCount; setId++)
+				builder.customerSetDemand(setId, ints.get());
+
+			/* Distance triangles, if cached */
+			if (ints.get() != 0) {
+				int [][] distances = new int[dimension][dimension];
+				readTriangle(ints, distances, 0);
+				int [][] setDistances = new int[setCount + 1][setCount + 1];
+				readTriangle(ints, setDistances, 1);
+				int [] depotSetDistances = new int[setCount + 1];
+				ints.get(depotSetDistances, 1, setCount);
+				builder.distances(distances, setDistances, depotSetDistances);
+			}
+
+			/* Neighbour lists */
+			int [][] closestCustomers = new int[dimension][];
+			for (int id = 0; id < dimension; id++)
+				ints.get(closestCustomers[id] = new int[ints.get()]);
+			int [][] closestSets = new int[setCount + 1][];
+			for (int setId = 1; setId <= setCount; setId++)
+				ints.get(closestSets[setId] = new int[ints.get()]);
+			builder.neighbours(closestCustomers, closestSets);
+
+			return builder.build();
+		} catch (RuntimeException e) {
+			return null; /* Truncated or corrupted file, that the builder may reject anywhere */
+		}
+	}
+
+	/**
+	 * Reads the lower triangle of a symmetric matrix, from the given index on
+	 */
+	static void readTriangle(IntBuffer ints, int [][] matrix, int first) {
+		for (int i = first; i < matrix.length; i++) {
+			int [] row = matrix[i];
+			ints.get(row, first, i - first);
+			for (int j = first; j < i; j++)
+				matrix[j][i] = row[j];
+		}
+	}
+
+	/**
+	 * Writes a cached instance to a temporary file, which then replaces the
+	 * cached file, so that concurrent runs never read a partial file
+	 */
+	static void write(Instance instance, File cacheFile, int k) throws IOException {
+		Path directory = cacheFile.getAbsoluteFile().getParentFile().toPath();
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, cacheFile.getName(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				write(instance, out, k);
+			}
+			try {
+				Files.move(temporary, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	static void write(Instance instance, DataOutputStream out, int k) throws IOException {
+		ArrayList<Customer> customers = instance.getCustomers();
+		ArrayList<CustomerSet> sets = instance.getSets();
+		InstanceArrays arrays = instance.getArrays();
+		int dimension = customers.size(), setCount = sets.size();
+		byte [] name = instance.getName().getBytes(StandardCharsets.UTF_8);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(k);
+		out.writeInt(name.length);
+		out.write(name);
+
+		/* Coordinates, sets and demands */
+		out.writeInt(dimension);
+		out.writeInt(instance.getFleet());
+		out.writeInt(instance.getCapacity());
+		out.writeInt(setCount);
+		for (int id = 0; id < dimension; id++) {
+			out.writeInt(arrays.x[id]);
+			out.writeInt(arrays.y[id]);
+			out.writeInt(arrays.setOf[id]);
+		}
+		for (int setId = 1; setId <= setCount; setId++)
+			out.writeInt(arrays.demandOfSet[setId]);
+
+		/* Distance triangles, if not too large */
+		long numOfInts = (long) dimension * (dimension - 1) / 2 + (long) setCount * (setCount + 1) / 2
+				+ (long) (dimension + setCount) * (instance.getGammaK() + 1) + 4L * dimension;
+		boolean withDistances = numOfInts <= MAX_INTS;
+		out.writeInt(withDistances ? 1 : 0);
+		if (withDistances) {
+			DistanceMatrix dmatrix = instance.getDistancematrix();
+			for (int i = 1; i < dimension; i++)
+				for (int j = 0; j < i; j++)
+					out.writeInt(dmatrix.getDistance(i, j));
+			for (int i = 2; i <= setCount; i++)
+				for (int j = 1; j < i; j++)
+					out.writeInt(instance.getSetDistance(sets.get(i - 1), sets.get(j - 1)));
+			for (CustomerSet set : sets)
+				out.writeInt(instance.getDepotSetDistance(set));
+		}
+
+		/* Neighbour lists */
+		GammaSet gamma = instance.getGammaSet();
+		for (Customer c : customers) {
+			ArrayList<Customer> neighbours = gamma.getClosestNeighbours(c);
+			out.writeInt(neighbours.size());
+			for (Customer neighbour : neighbours)
+				out.writeInt(neighbour.getId());
+		}
+		for (CustomerSet set : sets) {
+			ArrayList<CustomerSet> closestSets = gamma.getClosestSets(set);
+			out.writeInt(closestSets.size());
+			for (CustomerSet closestSet : closestSets)
+				out.writeInt(closestSet.getId());
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
@@ -19,8 +20,10 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import com.beust.jcommander.DynamicParameter;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.validators.PositiveInteger;
 
+import gvrp.acceptance.*;
 import gvrp.analysis.*;
 import gvrp.construction.*;
 import gvrp.jcommander.*;
@@ -40,6 +43,9 @@ public class Main {
 	@Parameter(names = "-idir", description = "Instance files directory")
 	String instanceDirPath = "data/GVRP3";
 
+	@Parameter(names = "-cachedir", description = "Directory of binary instance caches, preprocessed on first load (no caching by default)")
+	File cacheDirectory = null;
+
 	@Parameter(names = { "-v", "-verbose" }, description = "Verbosity")
 	boolean isVerbose = false;
 
@@ -82,6 +88,90 @@ public class Main {
 	@Parameter(names = {"-perturbation"}, description = "Perturbation magnitude", validateWith = ZeroToOneDouble.class)
 	double IlsPertubationFraction = 0.25;
 	
+	@Parameter(names = {"-adaptperturb"}, description = "Let the ILS perturbation magnitude grow on stagnation and shrink after improvements")
+	boolean adaptivePerturbation = false;
+	
+	@Parameter(names = {"-perturbmin"}, description = "Minimum adaptive perturbation magnitude", validateWith = ZeroToOneDouble.class)
+	double minPerturbationFraction = 0.02;
+	
+	@Parameter(names = {"-perturbmax"}, description = "Maximum adaptive perturbation magnitude", validateWith = ZeroToOneDouble.class)
+	double maxPerturbationFraction = 0.5;
+	
+	@Parameter(names = {"-penalised", "-penalized"}, description = "Let ILS exceed vehicle capacity for an adaptive penalty")
+	boolean penalisedSearch = false;
+	
+	@Parameter(names = {"-feasible"}, description = "Target fraction of capacity-feasible local minima in penalised search", validateWith = ZeroToOneDouble.class)
+	double targetFeasibleFraction = 0.2;
+	
+	@Parameter(names = {"-acceptance"}, description = "ILS acceptance criterion (walk, sa, threshold, rtr or lahc)", validateWith = AcceptanceCriterionName.class)
+	String acceptanceCriterion = "walk";
+	
+	@Parameter(names = {"-acceptdev"}, description = "Worsening accepted by the ILS acceptance criterion, as a fraction of the cost", validateWith = ZeroToOneDouble.class)
+	double acceptanceDeviation = 0.01;
+	
+	@Parameter(names = {"-acceptdecay"}, description = "Factor applied every ILS iteration to the temperature or threshold of the acceptance criterion", validateWith = ZeroToOneDouble.class)
+	double acceptanceDecay = 0.999;
+	
+	@Parameter(names = {"-lahclen"}, description = "History length of late acceptance hill climbing", validateWith = PositiveInteger.class)
+	int lahcHistoryLength = 50;
+	
+	@Parameter(names = {"-relink"}, description = "Relink elite ILS solutions on a background thread")
+	boolean pathRelinking = false;
+	
+	@Parameter(names = {"-recombine"}, description = "Number of ILS iterations between recombinations of pooled routes (0 disables them)", validateWith = PositiveInteger.class)
+	int recombinationPeriod = 0;
+	
+	@Parameter(names = {"-visited"}, description = "Number of recent local minima remembered, where local searches stop early (0 disables it)", validateWith = PositiveInteger.class)
+	int numOfVisitedSolutions = 0;
+	
+	@Parameter(names = {"-aos"}, description = "Adapt the order of local search neighbourhoods to their improvement per CPU time")
+	boolean adaptiveOperatorSelection = false;
+	
+	@Parameter(names = {"-crosslen"}, description = "Maximum segment length in CROSS-exchanges (1 disables them)", validateWith = PositiveInteger.class)
+	int maxSegmentLength = 3;
+	
+	@Parameter(names = {"-granular"}, description = "Skip local search pairs whose sets are farther apart than this multiple of the average edge cost (0 disables it)")
+	double granularity = 0;
+	
+	@Parameter(names = {"-setgamma"}, description = "Pair customers in local searches with the routed customers of the closest sets instead of the closest customers")
+	boolean setNeighbourhoods = false;
+	
+	@Parameter(names = {"-chaindepth"}, description = "Maximum number of customers ejected by an ejection chain (0 disables them)", validateWith = PositiveInteger.class)
+	int maxEjections = 2;
+	
+	@Parameter(names = {"-validate"}, description = "Check the solution after every iteration of the search (for debugging)")
+	boolean validateIterations = false;
+	
+	@Parameter(names = "-search", description = "Search metaheuristic (ils, hgs or ts)", validateWith = SearchMetaheuristicName.class)
+	String searchMetaheuristic = "ils";
+	
+	@Parameter(names = {"-hgsmu"}, description = "HGS population size after survivor selection", validateWith = PositiveInteger.class)
+	int hgsMinPopulationSize = 25;
+	
+	@Parameter(names = {"-hgslambda"}, description = "HGS number of offspring before survivor selection", validateWith = PositiveInteger.class)
+	int hgsGenerationSize = 40;
+	
+	@Parameter(names = {"-hgselite"}, description = "HGS number of elite individuals", validateWith = PositiveInteger.class)
+	int hgsNumOfElite = 4;
+	
+	@Parameter(names = {"-hgsclose"}, description = "HGS number of closest individuals in diversity contribution", validateWith = PositiveInteger.class)
+	int hgsNumOfClosest = 5;
+	
+	@Parameter(names = {"-tabumin"}, description = "Tabu search minimum tenure (in iterations)", validateWith = TabuTenure.class)
+	int minTabuTenure = 5;
+	
+	@Parameter(names = {"-tabumax"}, description = "Tabu search maximum tenure (in iterations, not less than -tabumin)", validateWith = TabuTenure.class)
+	int maxTabuTenure = 15;
+	
+	@Parameter(names = {"-threads"}, description = "Number of threads used by parallel searches", validateWith = PositiveInteger.class)
+	int numOfThreads = Runtime.getRuntime().availableProcessors();
+	
+	@Parameter(names = {"-exactsize"}, description = "Maximum number of customer sets for solving instances exactly instead of searching (at most " + ExactSolver.MAX_SETS + ")", validateWith = PositiveInteger.class)
+	int maxExactSets = ExactSolver.MAX_SETS;
+	
+	@Parameter(names = {"-gap"}, description = "Gap to the instance lower bound at which the search stops (in decimal representation)", validateWith = ZeroToOneDouble.class)
+	double lowerBoundGap = 0.0;
+	
 	@Parameter(names = {"-nobks"}, description = "Ignore BKS")
 	boolean ignoreBKS = false;
 	
@@ -103,6 +193,9 @@ public class Main {
 	@Parameter(names = {"-csvts"}, description = "Save improvements time stamps in a .csv file in the -csvdir directory")
 	boolean saveTimeSteps = false;
 	
+	@Parameter(names = {"-csvops"}, description = "Save neighbourhood weights learned with -aos in a .csv file in the -csvdir directory")
+	boolean saveOperatorWeights = false;
+	
 	@Parameter(names = {"-csvmeta"}, description = "Include header on .csv file with metadata about instance and solution")
 	boolean addMetadataToCSV = false;
 	
@@ -117,7 +210,9 @@ public class Main {
 	
 	AnalyticalValuesList meanValuesList = new AnalyticalValuesList();
 	BestKnownSolutions bestKnownSolutions;
-	UtilsCSV csv, csvTimeStamps;
+	UtilsCSV csv, csvTimeStamps, csvOperators;
+	AdaptiveOperatorSelection operatorSelection;
+	VisitedSolutions visitedSolutions;
 	GraphViewer viewer;
 	
 	HashMap<String, String> csvLabelMap = new HashMap<>();
@@ -139,6 +234,10 @@ public class Main {
 				.addObject(main)
 				.build();
 		jcommander.parse(args);
+		if (main.minTabuTenure > main.maxTabuTenure) {
+			throw new ParameterException("Parameter -tabumax should not be less than -tabumin (found "
+					+ main.maxTabuTenure + " < " + main.minTabuTenure + ")");
+		}
 		if (main.help == true) {
 			jcommander.usage();
 			return;
@@ -173,6 +272,12 @@ public class Main {
 			csvTimeStamps = new UtilsCSV("TS", CSVdirectory);
 			writeCSVHeader(csvTimeStamps);
 		}
+		if (saveOperatorWeights) {
+			csvOperators = new UtilsCSV("Operators", CSVdirectory);
+			writeCSVHeader(csvOperators);
+			csvOperators.writeLine("Instance", "Neighbourhood", "Weight", "Success rate",
+					"Explorations", "Total gain", "CPU time (ms)");
+		}
 		if (viewGraph) {
 			viewer = new GraphViewer();
 		}
@@ -229,6 +334,7 @@ public class Main {
 			try {
 				if (saveCSV) csv.writeToFile();
 				if (saveTimeSteps) csvTimeStamps.writeToFile();
+				if (saveOperatorWeights) csvOperators.writeToFile();
 			} catch (IOException e) {
 				e.printStackTrace();
 				return;
@@ -252,19 +358,24 @@ public class Main {
 
 		System.out.println(instanceFile);
 
-		/* Try to create Scanner object */
-		Scanner sc = null;
-		try {
-			sc = new Scanner(instanceFile);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-			return false;
+		/* Try to create Tokenizer object, unless instances are cached */
+		Tokenizer sc = null;
+		if (cacheDirectory == null) {
+			try {
+				sc = new Tokenizer(instanceFile);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+				return false;
+			}
 		}
 
-		/* Try to parse instance file */
+		/* Try to parse instance file (or load it from the cache) */
 		Instance instance = null;
 		try {
-			instance = Instance.parse(sc, gammak, showgamma);
+			if (sc == null)
+				instance = new InstanceCache(cacheDirectory).load(instanceFile, gammak, showgamma);
+			else
+				instance = Instance.parse(sc, gammak, showgamma);
 		} catch (NoSuchElementException nsee) {
 			nsee.printStackTrace();
 			return false;
@@ -276,7 +387,7 @@ public class Main {
 			return false;
 		}
 		
-		sc.close();
+		if (sc != null) sc.close();
 
 		if (instanceInfo)
 			System.out.println(instance);
@@ -339,8 +450,6 @@ public class Main {
 				meanValuesList.addValueToList("optcnt", 1.0);
 		}
 		
-		IteratedLocalSearch ils = new IteratedLocalSearch(seed);
-		
 		final long t0 = System.nanoTime();
 		ArrayList<Double> timesteps = new ArrayList<>();
 		ArrayList<Double> fractions = new ArrayList<>();
@@ -356,12 +465,20 @@ public class Main {
 		/* should this point be registered, being d = last data point - current data point */
 		Predicate<Double> registerDataPoint = saveNoise ? (d) -> d != 0 : (d) -> d > 0;
 		
+		LowerBound lowerBound = new LowerBound(instance, firstSPCost);
+		if (isVerbose)
+			System.out.printf("Lower bound: %d (degree %d, spanning forest %d, Lagrangian %d)\n", lowerBound.getValue(),
+					lowerBound.getDegreeBound(), lowerBound.getSpanningForestBound(), lowerBound.getLagrangianBound());
+		
 		/* should the I.L.S. continue, being s the current solution */
 		Predicate<Solution> stoppingCriterion = (s) -> {
+			if (validateIterations && !s.isValid(true))
+				throw new IllegalStateException("Invalid solution during the search");
 			double deltaT = System.nanoTime() - t0;
 			double bksFraction = bestKnownSolutions.getBKSFraction(s);
 			boolean continueILS = (deltaT < secondsPerInstance*1E9) &&
-					(ignoreBKS || bksFraction > qualityThreshold);
+					(ignoreBKS || bksFraction > qualityThreshold) &&
+					lowerBound.getGap(s.getCost()) > lowerBoundGap;
 			double bksDifference = fractions.get(fractions.size()-1) - bksFraction;
 			if (registerDataPoint.test(bksDifference)) {
 				if (livePrinting)
@@ -372,7 +489,32 @@ public class Main {
 			return continueILS; /* whether to continue or not */
 		};
 		
-		currentSolution = ils.explore(initialSolution, IlsPertubationFraction, stoppingCriterion);
+		operatorSelection = adaptiveOperatorSelection ? new AdaptiveOperatorSelection() : null;
+		visitedSolutions = numOfVisitedSolutions > 0 ? new VisitedSolutions(numOfVisitedSolutions) : null;
+		
+		currentSolution = null;
+		if (instance.getNumberOfSets() <= maxExactSets && ExactSolver.canSolve(instance)) {
+			currentSolution = ExactSolver.solve(instance);
+			if (currentSolution != null) {
+				stoppingCriterion.test(currentSolution); /* Last data point */
+				if (isVerbose)
+					System.out.println("Optimal solution found by the exact solver");
+			}
+		}
+		
+		if (currentSolution == null)
+			currentSolution = explore(initialSolution, stoppingCriterion);
+		
+		if (currentSolution == null) {
+			System.out.println(String.format(">>> '%s' is not a valid search metaheuristic.",
+					searchMetaheuristic));
+			return false;
+		}
+		
+		if (!currentSolution.isValid(isVerbose)) {
+			System.out.println(">>> Final solution is invalid.");
+			return false;
+		}
 		
 		double deltaTms = (System.nanoTime() - t0)/1E6;
 		
@@ -402,6 +544,28 @@ public class Main {
 			}
 		}
 		
+		if (visitedSolutions != null && isVerbose)
+			System.out.printf("Known local minima reached: %d out of %d\n",
+					visitedSolutions.getNumberOfRevisits(), visitedSolutions.getNumberOfAdditions());
+		
+		if (operatorSelection != null) {
+			if (isVerbose)
+				System.out.println("Neighbourhood weights:");
+			for (int level = 0; level < operatorSelection.getNumberOfLevels(); level++) {
+				String label = operatorSelection.getLabel(level);
+				double weight = operatorSelection.getWeight(level);
+				double successRate = operatorSelection.getSuccessRate(level);
+				if (isVerbose)
+					System.out.printf("%.4f\t%.2f%%\t%s\n", weight, 100*successRate, label);
+				if (saveOperatorWeights)
+					csvOperators.writeLine(instance.getName(), label, Double.toString(weight),
+							Double.toString(successRate),
+							Long.toString(operatorSelection.getNumberOfAttempts(level)),
+							Double.toString(operatorSelection.getTotalGain(level)),
+							Double.toString(operatorSelection.getTotalCpuTime(level)));
+			}
+		}
+		
 		if (saveCSV) {
 			HashMap<String, String> csvDataMap = new HashMap<>();
 			csvDataMap.put("name", instance.getName());
@@ -420,6 +584,79 @@ public class Main {
 		return true;
 	}
 
+	/* Names of the available search metaheuristics */
+	public static final List<String> SEARCH_METAHEURISTICS = Arrays.asList("ils", "hgs", "ts");
+
+	/**
+	 * Improves a solution with the search metaheuristic chosen in command line
+	 * 
+	 * @param solution - initial solution
+	 * @param stoppingCriterion - whether the search should continue
+	 * @return best solution found or {@code null} if the search metaheuristic is invalid
+	 */
+	public Solution explore(Solution solution, Predicate<Solution> stoppingCriterion) {
+		switch (searchMetaheuristic) {
+			case "ils":
+				IteratedLocalSearch ils = new IteratedLocalSearch(seed);
+				if (penalisedSearch)
+					ils.enablePenalisedSearch(targetFeasibleFraction);
+				if (adaptivePerturbation)
+					ils.enableAdaptivePerturbation(minPerturbationFraction, maxPerturbationFraction);
+				ils.setMaximumSegmentLength(maxSegmentLength);
+				ils.setMaximumEjections(maxEjections);
+				ils.setAdaptiveOperatorSelection(operatorSelection);
+				ils.setVisitedSolutions(visitedSolutions);
+				ils.setGranularity(granularity);
+				ils.setSetNeighbourhoods(setNeighbourhoods);
+				if (validateIterations)
+					ils.enableValidation();
+				ils.setAcceptanceCriterion(AcceptanceFactory.create(acceptanceCriterion, seed,
+						acceptanceDeviation, acceptanceDecay, lahcHistoryLength));
+				if (pathRelinking)
+					ils.enablePathRelinking();
+				if (recombinationPeriod > 0)
+					ils.enableRecombination(recombinationPeriod);
+				Solution ilsSolution = ils.explore(solution, IlsPertubationFraction, stoppingCriterion);
+				if (pathRelinking && isVerbose)
+					System.out.printf("Path relinking: %d paths, %d improvements\n",
+							ils.getPathRelinking().getNumberOfPaths(),
+							ils.getPathRelinking().getNumberOfImprovements());
+				if (recombinationPeriod > 0 && isVerbose)
+					System.out.printf("Route pool: %d routes\n", ils.getRoutePool().size());
+				return ilsSolution;
+			case "hgs":
+				HybridGeneticSearch hgs = new HybridGeneticSearch.Builder()
+					.seed(seed)
+					.minPopulationSize(hgsMinPopulationSize)
+					.generationSize(hgsGenerationSize)
+					.numOfElite(hgsNumOfElite)
+					.numOfClosest(hgsNumOfClosest)
+					.numOfThreads(numOfThreads)
+					.maxSegmentLength(maxSegmentLength)
+					.maxEjections(maxEjections)
+					.operatorSelection(operatorSelection)
+					.visitedSolutions(visitedSolutions)
+					.granularity(granularity)
+					.setNeighbourhoods(setNeighbourhoods)
+					.build();
+				return hgs.explore(solution, stoppingCriterion);
+			case "ts":
+				TabuSearch ts = new TabuSearch.Builder()
+					.seed(seed)
+					.minTenure(minTabuTenure)
+					.maxTenure(maxTabuTenure)
+					.maxSegmentLength(maxSegmentLength)
+					.maxEjections(maxEjections)
+					.operatorSelection(operatorSelection)
+					.granularity(granularity)
+					.setNeighbourhoods(setNeighbourhoods)
+					.build();
+				return ts.explore(solution, stoppingCriterion);
+			default:
+				return null;
+		}
+	}
+
 	public void writeCSVHeader(UtilsCSV csv) {
 		if (!addMetadataToCSV) return;
 		csv.writeLine("Mode", mode);
@@ -429,10 +666,32 @@ public class Main {
 		}
 		csv.writeLine("Best known solution file", bksPath);
 		csv.writeLine("Constructive metaheuristic", constructiveMetaheuristic);
+		csv.writeLine("Search metaheuristic", searchMetaheuristic);
+		if (searchMetaheuristic.equals("ts"))
+			csv.writeLine("Tabu tenure", minTabuTenure + "-" + maxTabuTenure);
+		csv.writeLine("Maximum number of sets solved exactly", Integer.toString(maxExactSets));
 		csv.writeLine("Random seed", Long.toString(seed));
 		csv.writeLine("Gamma set size", Integer.toString(gammak));
 		csv.writeLine("Seconds per instance", Double.toString(secondsPerInstance));
 		csv.writeLine("Pertubation fraction", Double.toString(IlsPertubationFraction));
+		if (adaptivePerturbation)
+			csv.writeLine("Adaptive pertubation bounds", minPerturbationFraction + "-" + maxPerturbationFraction);
+		csv.writeLine("Acceptance criterion", acceptanceCriterion);
+		csv.writeLine("Visited local minima remembered", Integer.toString(numOfVisitedSolutions));
+		if (recombinationPeriod > 0)
+			csv.writeLine("Recombination period", Integer.toString(recombinationPeriod));
+		csv.writeLine("Path relinking", Boolean.toString(pathRelinking));
+		csv.writeLine("Adaptive operator selection", Boolean.toString(adaptiveOperatorSelection));
+		if (penalisedSearch)
+			csv.writeLine("Target feasible fraction", Double.toString(targetFeasibleFraction));
+		csv.writeLine("Maximum CROSS-exchange segment length", Integer.toString(maxSegmentLength));
+		csv.writeLine("Maximum ejection chain depth", Integer.toString(maxEjections));
+		if (granularity > 0)
+			csv.writeLine("Granularity", Double.toString(granularity));
+		csv.writeLine("Set neighbourhoods", Boolean.toString(setNeighbourhoods));
+		if (validateIterations)
+			csv.writeLine("Validation of every iteration", Boolean.toString(validateIterations));
+		csv.writeLine("Lower bound gap", Double.toString(lowerBoundGap));
 		csv.writeLine("Solution quality threshold", Double.toString(qualityThreshold));
 		csv.writeLine();
 	}
@@ -25,8 +25,20 @@ public class Point {
 	}
 	
 	public int distanceTo(Point anotherPoint) {
-		int dx = this.x - anotherPoint.x;
-		int dy = this.y - anotherPoint.y;
+		return distance(this.x, this.y, anotherPoint.x, anotherPoint.y);
+	}
+	
+	/**
+	 * Euclidean distance rounded to the nearest integer
+	 * @param x1 - x coordinate of a point
+	 * @param y1 - y coordinate of a point
+	 * @param x2 - x coordinate of another point
+	 * @param y2 - y coordinate of another point
+	 * @return distance between the points
+	 */
+	public static int distance(int x1, int y1, int x2, int y2) {
+		int dx = x1 - x2;
+		int dy = y1 - y2;
 		double dist = Math.sqrt( (double)(dx * dx + dy * dy) );
 		int idist = (int) dist;
 		return (dist - idist) < 0.5d ? idist : idist + 1;
@@ -1,54 +1,233 @@
 package gvrp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.StringJoiner;
 
 @SuppressWarnings("serial")
-public class Route extends LinkedList<Customer> {
+public class Route extends ArrayList<Customer> {
 
 	DistanceMatrix dmatrix;
+	InstanceArrays arrays;
 	int id;
 	int maxCap;
-	HashMap<Customer, Route> map;
 	
-	/* Distance buffer
-	 * key = null -> distance from depot to depot */
-	HashMap<Customer, Integer> dLeft = new HashMap<>();
-	HashMap<Customer, Integer> dRight = new HashMap<>();
+	/* Route id (0 for none) and position of each customer, indexed by
+	 * customer id and shared by all routes of a solution. Positions are
+	 * written when the array copy of the route is rebuilt. */
+	int [] routeOf;
+	int [] positionOf;
 	
-	public Route(int id, int maximumCapacity, DistanceMatrix dmatrix, HashMap<Customer, Route> map) {
+	/* Id of the customer of each set that is in a route (0 for none),
+	 * indexed by set id and shared by all routes of a solution */
+	int [] routedCustomerOf;
+	
+	/* Cost per unit of load above the maximum capacity
+	 * If negative, the maximum capacity can't be exceeded */
+	double capacityPenalty = -1;
+	
+	/* Distance buffer, indexed by customer id
+	 * index 0 -> distance from depot to depot */
+	int [] dLeft;
+	int [] dRight;
+	
+	/* Array copy of the route, its prefix loads and its hash, rebuilt
+	 * only after the list is structurally modified (see modCount)
+	 * prefixLoads[i] = demand of the first i customers */
+	Customer [] snapshot = new Customer[0];
+	int [] prefixLoads = new int[1];
+	long hash = 0;
+	int snapshotModCount = -1;
+	
+	public Route(int id, int maximumCapacity, DistanceMatrix dmatrix, InstanceArrays arrays,
+			int [] routeOf, int [] positionOf, int [] routedCustomerOf) {
 		this.id = id;
 		this.maxCap = maximumCapacity;
 		this.dmatrix = dmatrix;
-		this.map = map;
+		this.arrays = arrays;
+		this.routeOf = routeOf;
+		this.positionOf = positionOf;
+		this.routedCustomerOf = routedCustomerOf;
+		this.dLeft = new int[arrays.x.length];
+		this.dRight = new int[arrays.x.length];
 	}
 	
-	public Route(Route anotherRoute, HashMap<Customer, Route> map) {
+	public Route(Route anotherRoute, int [] routeOf, int [] positionOf, int [] routedCustomerOf) {
 		super(anotherRoute); /* Copies customers */
-		dLeft.putAll(anotherRoute.dLeft);
-		dRight.putAll(anotherRoute.dRight);
+		dLeft = anotherRoute.dLeft.clone();
+		dRight = anotherRoute.dRight.clone();
 		this.id = anotherRoute.id;
 		this.maxCap = anotherRoute.maxCap;
+		this.capacityPenalty = anotherRoute.capacityPenalty;
 		this.dmatrix = anotherRoute.dmatrix;
-		this.map = map;
+		this.arrays = anotherRoute.arrays;
+		this.routeOf = routeOf;
+		this.positionOf = positionOf;
+		this.routedCustomerOf = routedCustomerOf;
+	}
+	
+	/**
+	 * Maps a customer that enters this route, as the customer of its set in a route
+	 */
+	private void mapCustomer(Customer c) {
+		int customerId = c.getId();
+		routeOf[customerId] = id;
+		routedCustomerOf[arrays.setOf[customerId]] = customerId;
+	}
+	
+	/**
+	 * Unmaps a customer that is not in a route anymore
+	 */
+	private void unmapCustomer(Customer c) {
+		int customerId = c.getId(), setId = arrays.setOf[customerId];
+		routeOf[customerId] = 0;
+		if (routedCustomerOf[setId] == customerId) routedCustomerOf[setId] = 0;
 	}
 	
 	public int getId() {
 		return id;
 	}
 	
+	/**
+	 * @return first customer of the route
+	 * @throws NoSuchElementException if the route is empty
+	 */
+	public Customer getFirst() {
+		if (isEmpty()) throw new NoSuchElementException();
+		return get(0);
+	}
+	
+	/**
+	 * @return last customer of the route
+	 * @throws NoSuchElementException if the route is empty
+	 */
+	public Customer getLast() {
+		if (isEmpty()) throw new NoSuchElementException();
+		return get(size()-1);
+	}
+	
 	/**
 	 * @return the capacity occupied by all the clients in the route
 	 */
 	public int getCapacity() {
-		int totalCap = 0;
-		for (Customer customer : this) {
-			totalCap += customer.getDemand();
+		updateSnapshot();
+		return prefixLoads[size()];
+	}
+	
+	/**
+	 * Zobrist-style hash of the route, which is the sum of the keys of
+	 * its edges, including the ones to the depot. It does not depend on
+	 * the direction of the route, and the hashes of routes can be added
+	 * up into the hash of a solution.
+	 * @return hash of the route (0 if empty)
+	 */
+	public long getHash() {
+		updateSnapshot();
+		return hash;
+	}
+	
+	/**
+	 * Pseudo-random key of an undirected edge (SplitMix64 finaliser)
+	 * @param ci - customer or {@code null} for the depot
+	 * @param cj - customer or {@code null} for the depot
+	 * @return edge key
+	 */
+	public static long getEdgeKey(Customer ci, Customer cj) {
+		long i = ci == null ? 0 : ci.getId(), j = cj == null ? 0 : cj.getId();
+		long key = Math.min(i, j) << 32 | Math.max(i, j);
+		key += 0x9e3779b97f4a7c15L;
+		key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+		key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+		return key ^ (key >>> 31);
+	}
+	
+	/**
+	 * @param c - customer in this route
+	 * @return position of the customer
+	 */
+	public int getPosition(Customer c) {
+		updateSnapshot();
+		return positionOf[c.getId()];
+	}
+	
+	/**
+	 * Rebuilds the array copy of the route, its prefix loads, its
+	 * hash and the positions of its customers, if the route has
+	 * changed since the last time
+	 */
+	private void updateSnapshot() {
+		if (snapshotModCount == modCount) return;
+		int size = size();
+		if (snapshot.length < size) {
+			snapshot = new Customer[size];
+			prefixLoads = new int[size+1];
 		}
-		return totalCap;
+		int i = 0;
+		Customer previous = null;
+		hash = 0;
+		for (Customer c : this) {
+			snapshot[i] = c;
+			positionOf[c.getId()] = i;
+			prefixLoads[i+1] = prefixLoads[i] + arrays.getDemand(c.getId());
+			hash += getEdgeKey(previous, c);
+			previous = c;
+			++i;
+		}
+		if (previous != null) hash += getEdgeKey(previous, null);
+		snapshotModCount = modCount;
+	}
+	
+	/**
+	 * @return the maximum capacity of the route
+	 */
+	public int getMaximumCapacity() {
+		return maxCap;
+	}
+	
+	/**
+	 * @return cost per unit of load above the maximum capacity
+	 * (negative if the maximum capacity can't be exceeded)
+	 */
+	public double getCapacityPenalty() {
+		return capacityPenalty;
+	}
+	
+	/**
+	 * Allows moves to exceed the maximum capacity, for a cost
+	 * @param penalty - cost per unit of load above the maximum capacity
+	 * (negative if the maximum capacity can't be exceeded)
+	 */
+	public void setCapacityPenalty(double penalty) {
+		this.capacityPenalty = penalty;
+	}
+	
+	/**
+	 * Penalty of a given load in the route
+	 * @param load - route load
+	 * @return penalty or infinity if load is not allowed
+	 */
+	public double getLoadPenalty(int load) {
+		int excess = load - maxCap;
+		if (excess <= 0) return 0;
+		if (capacityPenalty < 0) return Double.POSITIVE_INFINITY;
+		return capacityPenalty * excess;
+	}
+	
+	/**
+	 * Variation of the load penalty of the route after changing its load
+	 * @param loadDelta - variation of the route load
+	 * @return penalty variation or infinity if the new load is not allowed
+	 */
+	public double getLoadPenaltyDelta(int loadDelta) {
+		int load = getCapacity();
+		double penaltyAfter = getLoadPenalty(load + loadDelta);
+		if (penaltyAfter == Double.POSITIVE_INFINITY) return penaltyAfter;
+		return penaltyAfter - getLoadPenalty(load);
 	}
 	
 	/**
@@ -84,42 +263,91 @@ public class Route extends LinkedList<Customer> {
 	}
 	
 	public boolean removeCustomer(Customer c, DistanceMatrix dmatrix) {
-		int index = indexOf(c);
-		boolean removed = remove(c);
-		if (!removed) return false;
+		if (routeOf[c.getId()] != id) return false;
+		int index = getPosition(c);
+		remove(index);
 		if (isEmpty()) {
 			/* Updates customer route */
-			map.put(c, null);
+			unmapCustomer(c);
 			return true;
 		}
 		int lb = Math.max(0, index-1);
 		int ub = Math.min(size()-1, index+1);
 		recalculateDistanceMap(lb, ub, dmatrix);
-		map.put(c, null); /* Updates customer route */
+		unmapCustomer(c); /* Updates customer route */
 		return true;
 	}
 	
 	public boolean addCustomer(Customer c, DistanceMatrix dmatrix) {
-		int setDemand = c.getSet().getDemand();
+		int setDemand = arrays.getDemand(c.getId());
 		if (setDemand + getCapacity() > maxCap) return false;
-		if (contains(c)) return false;
-		addLast(c);
+		if (routeOf[c.getId()] == id) return false;
+		add(c);
 		int size = size();
 		recalculateDistanceMap(size-1, size-1, dmatrix);
-		map.put(c, this); /* Updates customer route */
+		mapCustomer(c); /* Updates customer route */
+		return true;
+	}
+
+	/**
+	 * Appends a sequence of customers to the end of the route, updating
+	 * the distance map only once, after all of them have been added
+	 * @param customers - customers to be appended, in order
+	 * @param dmatrix - distance matrix
+	 * @return success or not (fails without changes if capacity is exceeded)
+	 */
+	public boolean addCustomers(List<Customer> customers, DistanceMatrix dmatrix) {
+		if (customers.isEmpty()) return true;
+		int totalDemand = getCapacity();
+		for (Customer c : customers)
+			totalDemand += arrays.getDemand(c.getId());
+		if (totalDemand > maxCap) return false;
+		int firstIndex = size();
+		for (Customer c : customers) {
+			add(c);
+			mapCustomer(c); /* Updates customer route */
+		}
+		recalculateDistanceMap(firstIndex, size()-1, dmatrix);
 		return true;
 	}
 
-	private void recalculateLayerDistanceMap(DistanceMatrix dmatrix, CustomerSet baseLayer, CustomerSet newLayer, HashMap<Customer, Integer> map) {
-		for (Customer newc : newLayer) {
+	/**
+	 * Inserts a customer in a given position of the route, regardless
+	 * of the route capacity, which should be checked beforehand
+	 * @param index - position of the customer after insertion
+	 * @param c - customer
+	 * @param dmatrix - distance matrix
+	 */
+	public void insertCustomer(int index, Customer c, DistanceMatrix dmatrix) {
+		add(index, c);
+		recalculateDistanceMap(index, index, dmatrix);
+		mapCustomer(c); /* Updates customer route */
+	}
+	
+	/**
+	 * Distance between two customers, where {@code null} stands for the depot
+	 */
+	private static int distance(Customer ci, Customer cj, DistanceMatrix dmatrix) {
+		if (ci == null) return cj == null ? 0 : dmatrix.getDistanceFromDepot(cj);
+		if (cj == null) return dmatrix.getDistanceFromDepot(ci);
+		return dmatrix.getDistanceBetween(ci, cj);
+	}
+
+	private void recalculateLayerDistanceMap(DistanceMatrix dmatrix, CustomerSet baseLayer, CustomerSet newLayer, int [] map) {
+		int [] setStart = arrays.setStart, setMembers = arrays.setMembers;
+		int baseId = baseLayer.getId(), newId = newLayer.getId();
+		for (int a = setStart[newId]; a < setStart[newId+1]; a++) {
+			int newc = setMembers[a];
+			int [] row = dmatrix.getRow(newc);
 			int shortestDistance = Integer.MAX_VALUE;
-			for (Customer basec : baseLayer) {
-				int distance = dmatrix.getDistanceBetween(basec, newc) + map.get(basec);
+			for (int b = setStart[baseId]; b < setStart[baseId+1]; b++) {
+				int basec = setMembers[b];
+				int distance = row[basec] + map[basec];
 				if (distance < shortestDistance) {
 					shortestDistance = distance;
 				}
 			}
-			map.put(newc, shortestDistance);
+			map[newc] = shortestDistance;
 		}
 	}
 	
@@ -151,21 +379,22 @@ public class Route extends LinkedList<Customer> {
 		 * dr(N) = D(N,depot)
 		 */
 		
+		int [] setStart = arrays.setStart, setMembers = arrays.setMembers;
+		int [] depotRow = dmatrix.getRow(0);
 		if (upperBound == size-1) {
 			ub = getLast();
-			for (Customer setCustomer : ub.getSet())
-				dRight.put(setCustomer, dmatrix.getDistanceFromDepot(setCustomer));
+			int ubSet = ub.getSet().getId();
+			for (int a = setStart[ubSet]; a < setStart[ubSet+1]; a++)
+				dRight[setMembers[a]] = depotRow[setMembers[a]];
 		} else {
 			ub = get(upperBound);
 			Customer post = get(upperBound+1);
 			recalculateLayerRightDistanceMap(dmatrix, post.getSet(), ub.getSet());
 		}
 
-		Iterator<Customer> invIterator = descendingIterator();
-		while(invIterator.hasNext() && !invIterator.next().equals(ub));
 		Customer post = ub; /* Begin with upper bound */
-		while(invIterator.hasNext()) {
-			Customer c = invIterator.next();
+		for (int i = upperBound-1; i >= 0; i--) {
+			Customer c = get(i);
 			recalculateLayerRightDistanceMap(dmatrix, post.getSet(), c.getSet());
 			post = c;
 		}
@@ -180,17 +409,19 @@ public class Route extends LinkedList<Customer> {
 		
 		if (lowerBound == 0) {
 			lb = getFirst();
+			int lbSet = lb.getSet().getId();
 			int shortestDistance = Integer.MAX_VALUE;
-			for (Customer setCustomer : lb.getSet()) {
-				int distance = dmatrix.getDistanceFromDepot(setCustomer);
-				int accumulatedDistance = distance + dRight.get(setCustomer);
+			for (int a = setStart[lbSet]; a < setStart[lbSet+1]; a++) {
+				int setCustomer = setMembers[a];
+				int distance = depotRow[setCustomer];
+				int accumulatedDistance = distance + dRight[setCustomer];
 				if (accumulatedDistance < shortestDistance) {
 					shortestDistance = accumulatedDistance;
 				}
-				dLeft.put(setCustomer, distance);
+				dLeft[setCustomer] = distance;
 			}
 			/* Closest costumer to the depot (from the right-hand side) */
-			dRight.put(null, shortestDistance);
+			dRight[0] = shortestDistance;
 		} else {
 			lb = get(lowerBound);
 			Customer prev = get(lowerBound-1);
@@ -325,9 +556,12 @@ public class Route extends LinkedList<Customer> {
 		
 		/*
 		 * Checking if route r has enough capacity
+		 * (or how much it costs to exceed it)
 		 */
 		
-		if (cp.getDemand() + r.getCapacity() > r.maxCap) return false;
+		int demand = arrays.getDemand(cp.getId());
+		double penaltyDelta = getLoadPenaltyDelta(-demand) + r.getLoadPenaltyDelta(demand);
+		if (penaltyDelta == Double.POSITIVE_INFINITY) return false;
 		
 		/*
 		 * Checking if there is a cost improvement
@@ -361,14 +595,14 @@ public class Route extends LinkedList<Customer> {
 		
 		dpq = dmatrix.getDistanceBetween(cp, cq);
 		
-		int delta = dxy + dzp + dpq - dxp - dpy - dzq;
+		double delta = dxy + dzp + dpq - dxp - dpy - dzq + penaltyDelta;
 		/* Does not accept solutions of same cost */
 		if (delta >= 0 && onlyImprove) return false;
 		
 		/* Local search is then applied */
 		r.add(q, remove(p));
 		
-		map.put(cp, r); /* Updates customer route */
+		routeOf[cp.getId()] = r.id; /* Updates customer route */
 		
 		recalculateDistanceMap(cx == null ? p : x, cy == null ? p-1 : y-1, dmatrix); /* y decreased by one because p is removed from this route */
 		r.recalculateDistanceMap(cz == null ? q : z, q+1, dmatrix); /* q increased by one because p is inserted in the route r*/
@@ -504,12 +738,12 @@ public class Route extends LinkedList<Customer> {
 		
 		/*
 		 * Checking if this route and route r have enough capacity
+		 * (or how much it costs to exceed them)
 		 */
 		
-		int demandGap = cp.getDemand() - cq.getDemand();
-		if (r.getCapacity() + demandGap > r.maxCap ||
-				getCapacity() - demandGap > maxCap)
-			return false;
+		int demandGap = arrays.getDemand(cp.getId()) - arrays.getDemand(cq.getId());
+		double penaltyDelta = getLoadPenaltyDelta(-demandGap) + r.getLoadPenaltyDelta(demandGap);
+		if (penaltyDelta == Double.POSITIVE_INFINITY) return false;
 
 		/*
 		 * Checking if there is a cost improvement
@@ -556,7 +790,7 @@ public class Route extends LinkedList<Customer> {
 			dqw = dmatrix.getDistanceBetween(cq, cw);
 		}
 		
-		int delta = dxq + dqy + dzp + dpw - dxp - dpy - dzq - dqw;
+		double delta = dxq + dqy + dzp + dpw - dxp - dpy - dzq - dqw + penaltyDelta;
 		/* Does not accept solutions of same cost */
 		if (delta >= 0 && onlyImprove) return false;
 		
@@ -570,8 +804,8 @@ public class Route extends LinkedList<Customer> {
 		r.add(q, cp);
 		
 		/* Updates customers' route */
-		map.put(cp, r);
-		map.put(cq, this);
+		routeOf[cp.getId()] = r.id;
+		routeOf[cq.getId()] = id;
 		
 		recalculateDistanceMap(cx == null ? p : x, cy == null ? p : y, dmatrix);
 		r.recalculateDistanceMap(cz == null ? q : z, cw == null ? q : w, dmatrix);
@@ -580,6 +814,286 @@ public class Route extends LinkedList<Customer> {
 	}
 		
 
+	/**
+	 * Exchanges two customers from different routes, reinserting each one in
+	 * the best position of the other route, which is not necessarily the
+	 * position of the customer it is exchanged with. The best pair of customers
+	 * is searched for.
+	 * 
+	 * The three best insertion positions of every customer in the other
+	 * route are computed beforehand, so that each pair is evaluated in O(1):
+	 * at most two of these positions are adjacent to the removed customer.
+	 * 
+	 * From the following paper:
+	 * Vidal T.;
+	 * "Hybrid genetic search for the CVRP: open-source implementation and SWAP* neighborhood"
+	 * 
+	 * @param r - another route
+	 * @param dmatrix - distance matrix
+	 * @param onlyImprove - whether to apply move only if total cost is improved
+	 * @return success or not
+	 */
+	public boolean interSwapStar(Route r, DistanceMatrix dmatrix, boolean onlyImprove) {
+		if (this == r) return false;
+		int size = size();
+		int rSize = r.size();
+		if (size == 0 || rSize == 0) return false;
+		
+		Customer [] route = toArray(new Customer[size]);
+		Customer [] rRoute = r.toArray(new Customer[rSize]);
+		
+		/* Removal gains and best insertion positions in the other route */
+		int [] gain = removalGains(route, dmatrix);
+		int [] rGain = removalGains(rRoute, dmatrix);
+		int [][] insertionCost = new int[size][3], insertionPos = new int[size][3];
+		int [][] rInsertionCost = new int[rSize][3], rInsertionPos = new int[rSize][3];
+		for (int i = 0; i < size; i++)
+			bestInsertions(route[i], rRoute, dmatrix, insertionCost[i], insertionPos[i]);
+		for (int j = 0; j < rSize; j++)
+			bestInsertions(rRoute[j], route, dmatrix, rInsertionCost[j], rInsertionPos[j]);
+		
+		/*
+		 * For each pair of customers p (this route) and q (route r)
+		 * 
+		 * BEFORE
+		 * This route: ... -- x -- p -- y -- ... -- a -- b -- ...
+		 * Route r: ... -- z -- q -- w -- ... -- c -- d -- ...
+		 * 
+		 * AFTER
+		 * This route: ... -- x -- y -- ... -- a -- q -- b -- ...
+		 * Route r: ... -- z -- w -- ... -- c -- p -- d -- ...
+		 * 
+		 * delta = insertion(q, this - p) + insertion(p, r - q) - gain(p) - gain(q)
+		 * where the insertion position can also be where the removed customer was
+		 * There is improvement iff delta < 0
+		 */
+		
+		double bestDelta = onlyImprove ? 0 : Double.POSITIVE_INFINITY;
+		int bestP = -1, bestQ = -1, bestPPos = -1, bestQPos = -1;
+		for (int p = 0; p < size; p++) {
+			Customer cp = route[p];
+			for (int q = 0; q < rSize; q++) {
+				Customer cq = rRoute[q];
+				int demandGap = arrays.getDemand(cp.getId()) - arrays.getDemand(cq.getId());
+				double penaltyDelta = getLoadPenaltyDelta(-demandGap) + r.getLoadPenaltyDelta(demandGap);
+				if (penaltyDelta == Double.POSITIVE_INFINITY) continue;
+				
+				/* Best position of p in route r without q */
+				Customer cz = q == 0 ? null : rRoute[q-1];
+				Customer cw = q == rSize-1 ? null : rRoute[q+1];
+				int pCost = distance(cz, cp, dmatrix) + distance(cp, cw, dmatrix) - distance(cz, cw, dmatrix);
+				int pPos = q; /* In place of q */
+				for (int k = 0; k < 3; k++) {
+					int pos = insertionPos[p][k];
+					if (pos == -1) break;
+					if (pos == q || pos == q+1) continue; /* Adjacent to q */
+					if (insertionCost[p][k] < pCost) {
+						pCost = insertionCost[p][k];
+						pPos = pos;
+					}
+					break;
+				}
+				
+				/* Best position of q in this route without p */
+				Customer cx = p == 0 ? null : route[p-1];
+				Customer cy = p == size-1 ? null : route[p+1];
+				int qCost = distance(cx, cq, dmatrix) + distance(cq, cy, dmatrix) - distance(cx, cy, dmatrix);
+				int qPos = p; /* In place of p */
+				for (int k = 0; k < 3; k++) {
+					int pos = rInsertionPos[q][k];
+					if (pos == -1) break;
+					if (pos == p || pos == p+1) continue; /* Adjacent to p */
+					if (rInsertionCost[q][k] < qCost) {
+						qCost = rInsertionCost[q][k];
+						qPos = pos;
+					}
+					break;
+				}
+				
+				double delta = pCost + qCost - gain[p] - rGain[q] + penaltyDelta;
+				if (delta < bestDelta) {
+					bestDelta = delta;
+					bestP = p;
+					bestQ = q;
+					bestPPos = pPos;
+					bestQPos = qPos;
+				}
+			}
+		}
+		
+		if (bestP == -1) return false; /* No (improving) move */
+		
+		/* Local search is then applied
+		 * Insertion positions are shifted if after the removed customer */
+		Customer cp = route[bestP], cq = rRoute[bestQ];
+		removeCustomer(cp, dmatrix);
+		r.removeCustomer(cq, dmatrix);
+		insertCustomer(bestQPos > bestP ? bestQPos - 1 : bestQPos, cq, dmatrix);
+		r.insertCustomer(bestPPos > bestQ ? bestPPos - 1 : bestPPos, cp, dmatrix);
+		
+		return true;
+	}
+	
+	/**
+	 * @param route - sequence of customers
+	 * @param dmatrix - distance matrix
+	 * @return how much the cost of the route decreases by removing each customer
+	 */
+	private static int [] removalGains(Customer [] route, DistanceMatrix dmatrix) {
+		int size = route.length;
+		int [] gains = new int[size];
+		for (int i = 0; i < size; i++) {
+			Customer cx = i == 0 ? null : route[i-1];
+			Customer cy = i == size-1 ? null : route[i+1];
+			gains[i] = distance(cx, route[i], dmatrix) + distance(route[i], cy, dmatrix) - distance(cx, cy, dmatrix);
+		}
+		return gains;
+	}
+	
+	/**
+	 * Finds the three cheapest positions to insert a customer in a route
+	 * @param c - customer
+	 * @param route - sequence of customers
+	 * @param dmatrix - distance matrix
+	 * @param costs - insertion costs, in ascending order
+	 * @param positions - insertion positions (index of the customer after insertion)
+	 * or -1 if there are less than three positions
+	 */
+	private static void bestInsertions(Customer c, Customer [] route, DistanceMatrix dmatrix, int [] costs, int [] positions) {
+		Arrays.fill(costs, Integer.MAX_VALUE);
+		Arrays.fill(positions, -1);
+		for (int pos = 0; pos <= route.length; pos++) {
+			Customer cx = pos == 0 ? null : route[pos-1];
+			Customer cy = pos == route.length ? null : route[pos];
+			int cost = distance(cx, c, dmatrix) + distance(c, cy, dmatrix) - distance(cx, cy, dmatrix);
+			for (int k = 0; k < 3; k++) {
+				if (cost < costs[k]) {
+					for (int l = 2; l > k; l--) {
+						costs[l] = costs[l-1];
+						positions[l] = positions[l-1];
+					}
+					costs[k] = cost;
+					positions[k] = pos;
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Exchanges a segment of this route with a segment of another route
+	 * (CROSS-exchange), each of which may be reversed when inserted in the
+	 * other route. A segment of length zero in route r turns the move into
+	 * a segment relocation. Since distances are symmetric, the cost of the
+	 * inner edges of a segment does not change, even when reversed, so the
+	 * move is evaluated in constant time from its boundary edges and the
+	 * prefix loads of both routes.
+	 * @param r - another route
+	 * @param p - position of the first customer of the segment in this route
+	 * @param q - position of the first customer of the segment in route r
+	 * (or where the segment of this route is inserted, if qLength is zero)
+	 * @param pLength - length of the segment in this route (at least 1)
+	 * @param qLength - length of the segment in route r (at least 0)
+	 * @param reverseP - whether the segment of this route is reversed in route r
+	 * @param reverseQ - whether the segment of route r is reversed in this route
+	 * @param dmatrix - distance matrix
+	 * @param onlyImprove - whether to apply move only if total cost is improved
+	 * @return success or not
+	 */
+	public boolean interCrossExchange(Route r, int p, int q, int pLength, int qLength,
+			boolean reverseP, boolean reverseQ, DistanceMatrix dmatrix, boolean onlyImprove) {
+		if (this == r) return false;
+		int size = size();
+		int rSize = r.size();
+		if (size == 0 || pLength < 1 || qLength < 0) return false;
+		
+		p = Math.abs(p) % size; /* p in [0,size) */
+		q = Math.abs(q) % (rSize + 1); /* q in [0,rSize] */
+		
+		/* Segments must fit in their routes */
+		if (p + pLength > size || q + qLength > rSize) return false;
+		
+		/* Can't leave this route empty */
+		if (pLength == size && qLength == 0) return false;
+		
+		updateSnapshot();
+		r.updateSnapshot();
+		
+		/*
+		 * Calculating the delta of route cost by the following expression
+		 * 
+		 * BEFORE
+		 * This route: ... -- x -- [pf ... pl] -- y -- ...
+		 * Route r: ... -- z -- [qf ... ql] -- w -- ...
+		 * 
+		 * AFTER
+		 * This route: ... -- x -- [qf ... ql] -- y -- ...
+		 * Route r: ... -- z -- [pf ... pl] -- w -- ...
+		 * 
+		 * where a reversed segment has its ends swapped and, if route r
+		 * has no segment, x is directly linked to y and z to w
+		 * 
+		 * delta = dx(qf) + d(ql)y + dz(pf) + d(pl)w - dx(pf) - d(pl)y - dz(qf) - d(ql)w
+		 * There is improvement iff delta < 0
+		 */
+		
+		Customer cx = p == 0 ? null : snapshot[p-1];
+		Customer cy = p + pLength == size ? null : snapshot[p+pLength];
+		Customer cz = q == 0 ? null : r.snapshot[q-1];
+		Customer cw = q + qLength == rSize ? null : r.snapshot[q+qLength];
+		Customer cpf = snapshot[p], cpl = snapshot[p+pLength-1];
+		
+		int removed = distance(cx, cpf, dmatrix) + distance(cpl, cy, dmatrix);
+		int added = reverseP ?
+				distance(cz, cpl, dmatrix) + distance(cpf, cw, dmatrix) :
+				distance(cz, cpf, dmatrix) + distance(cpl, cw, dmatrix);
+		if (qLength == 0) {
+			removed += distance(cz, cw, dmatrix);
+			added += distance(cx, cy, dmatrix);
+		} else {
+			Customer cqf = r.snapshot[q], cql = r.snapshot[q+qLength-1];
+			removed += distance(cz, cqf, dmatrix) + distance(cql, cw, dmatrix);
+			added += reverseQ ?
+					distance(cx, cql, dmatrix) + distance(cqf, cy, dmatrix) :
+					distance(cx, cqf, dmatrix) + distance(cql, cy, dmatrix);
+		}
+		
+		/*
+		 * Checking if both routes have enough capacity
+		 * (or how much it costs to exceed it)
+		 */
+		
+		int pLoad = prefixLoads[p+pLength] - prefixLoads[p];
+		int qLoad = r.prefixLoads[q+qLength] - r.prefixLoads[q];
+		double penaltyDelta = getLoadPenaltyDelta(qLoad - pLoad) + r.getLoadPenaltyDelta(pLoad - qLoad);
+		if (penaltyDelta == Double.POSITIVE_INFINITY) return false;
+		
+		double delta = added - removed + penaltyDelta;
+		/* Does not accept solutions of same cost */
+		if (delta >= 0 && onlyImprove) return false;
+		
+		/* Local search is then applied */
+		
+		List<Customer> pSegment = Arrays.asList(Arrays.copyOfRange(snapshot, p, p + pLength));
+		List<Customer> qSegment = Arrays.asList(Arrays.copyOfRange(r.snapshot, q, q + qLength));
+		if (reverseP) Collections.reverse(pSegment);
+		if (reverseQ) Collections.reverse(qSegment);
+		
+		subList(p, p + pLength).clear();
+		addAll(p, qSegment);
+		r.subList(q, q + qLength).clear();
+		r.addAll(q, pSegment);
+		
+		for (Customer c : qSegment) routeOf[c.getId()] = id; /* Updates customer route */
+		for (Customer c : pSegment) routeOf[c.getId()] = r.id;
+		
+		int newSize = size(), newRSize = r.size();
+		recalculateDistanceMap(cx == null ? 0 : p-1, cy == null ? newSize-1 : p+qLength, dmatrix);
+		r.recalculateDistanceMap(cz == null ? 0 : q-1, cw == null ? newRSize-1 : q+pLength, dmatrix);
+		
+		return true;
+	}
+	
 	/**
 	 * Reverses a sequence of customers from the same route
 	 * @param p - position of the first customer from this route
@@ -646,10 +1160,8 @@ public class Route extends LinkedList<Customer> {
 		if (delta >= 0 && onlyImprove) return false;
 		
 		/* Local search is then applied */
-		int stackSize = q-p+1;
-		Customer [] stack = new Customer[stackSize];
-		for (int i = 0; i < stackSize; i++) stack[i] = remove(p);
-		for (int i = 0; i < stackSize; i++) add(p, stack[i]);
+		for (int i = p, j = q; i < j; i++, j--) set(i, set(j, get(i)));
+		snapshotModCount = -1; /* Reversing is not a structural modification */
 		
 		recalculateDistanceMap(cx == null ? p : x, cy == null ? q : y, dmatrix);
 		
@@ -719,8 +1231,8 @@ public class Route extends LinkedList<Customer> {
 		int demandGap = 0;
 		
 		Iterator<Customer> iter = listIterator(p), rIter = r.listIterator(q);
-		while (iter.hasNext()) demandGap += iter.next().getDemand();
-		while (rIter.hasNext()) demandGap -= rIter.next().getDemand();
+		while (iter.hasNext()) demandGap += arrays.getDemand(iter.next().getId());
+		while (rIter.hasNext()) demandGap -= arrays.getDemand(rIter.next().getId());
 		
 		/* There is a relationship between the demandGap and
 		 * the resulting routes' capacities
@@ -731,11 +1243,11 @@ public class Route extends LinkedList<Customer> {
 		 * this*.cap = this.cap - demandGap
 		 * r*.cap = r.cap + demandGap
 		 * 
-		 * Move is infeasible if this*.cap > maxCap || r*.cap > maxCap
+		 * Move is infeasible if this*.cap > maxCap || r*.cap > maxCap,
+		 * unless capacity is penalised instead
 		 */
-		if (getCapacity() - demandGap > maxCap ||
-			r.getCapacity() + demandGap > maxCap)
-			return false;
+		double penaltyDelta = getLoadPenaltyDelta(-demandGap) + r.getLoadPenaltyDelta(demandGap);
+		if (penaltyDelta == Double.POSITIVE_INFINITY) return false;
 		
 		/* Checking if there is a cost improvement
 		 */
@@ -745,7 +1257,7 @@ public class Route extends LinkedList<Customer> {
 		dyq = dmatrix.getDistanceBetween(cy, cq);
 		dyp = dmatrix.getDistanceBetween(cy, cp);
 		
-		int delta = dxq + dyp - dxp - dyq;
+		double delta = dxq + dyp - dxp - dyq + penaltyDelta;
 		/* Does not accept solutions of same cost */
 		if (delta >= 0 && onlyImprove) return false;
 		
@@ -755,23 +1267,21 @@ public class Route extends LinkedList<Customer> {
 		int stackSize = size - p;
 		int rStackSize = rSize - q;
 		
-		/* Stacks will store route tails
+		/* Tails are exchanged in place: the common length is swapped
+		 * and the rest of the longer tail is moved to the other route
 		 */
-		Customer [] stack = new Customer[stackSize],
-				rStack = new Customer[rStackSize];
-		
-		/* The order of the operations is really important here
-		 */
-		for (int i = 0; i < stackSize; i++) stack[i] = remove(p);
-		for (int i = 0; i < rStackSize; i++) rStack[i] = r.remove(q);
-		for (int i = 0; i < rStackSize; i++) {
-			addLast(rStack[i]);
-			map.put(rStack[i], this);
-		}
-		for (int i = 0; i < stackSize; i++) {
-			r.addLast(stack[i]);
-			map.put(stack[i], r);
+		int common = Math.min(stackSize, rStackSize);
+		for (int i = 0; i < common; i++) set(p+i, r.set(q+i, get(p+i)));
+		if (stackSize > common) {
+			for (int i = p + common; i < size; i++) r.add(get(i));
+			removeRange(p + common, size);
+		} else if (rStackSize > common) {
+			for (int i = q + common; i < rSize; i++) add(r.get(i));
+			r.removeRange(q + common, rSize);
 		}
+		snapshotModCount = r.snapshotModCount = -1; /* Swapping is not a structural modification */
+		for (int i = p; i < size(); i++) routeOf[get(i).getId()] = id;
+		for (int i = q; i < r.size(); i++) routeOf[r.get(i).getId()] = r.id;
 		
 		recalculateDistanceMap(x, p + rStackSize - 1, dmatrix);
 		r.recalculateDistanceMap(y, q + stackSize - 1, dmatrix);
@@ -856,47 +1366,134 @@ public class Route extends LinkedList<Customer> {
 		return true;
 	}
 	
+	/**
+	 * Evaluates visiting another customer of the same set in a given position,
+	 * from the distances to its predecessor and successor only
+	 * @param p - position of customer in this route
+	 * @param c - another customer of the same set
+	 * @param dmatrix - distance matrix
+	 * @return delta of the route cost
+	 */
+	public int getRepresentativeDelta(int p, Customer c, DistanceMatrix dmatrix) {
+		updateSnapshot();
+		int size = size();
+		Customer prev = p > 0 ? snapshot[p-1] : null, curr = snapshot[p];
+		Customer next = p < size-1 ? snapshot[p+1] : null;
+		return distance(prev, c, dmatrix) + distance(c, next, dmatrix)
+				- distance(prev, curr, dmatrix) - distance(curr, next, dmatrix);
+	}
+	
+	/**
+	 * Visits another customer of the same set in a given position. The
+	 * distance maps cover every customer of each set, so they stay valid.
+	 * @param p - position of customer in this route
+	 * @param c - another customer of the same set
+	 * @param dmatrix - distance matrix
+	 * @param onlyImprove - whether to apply move only if total cost is improved
+	 * @return success or not
+	 */
+	public boolean changeRepresentative(int p, Customer c, DistanceMatrix dmatrix, boolean onlyImprove) {
+		if (p < 0 || p >= size()) return false;
+		Customer curr = get(p);
+		if (c == curr || !c.getSet().equals(curr.getSet())) return false;
+		int delta = getRepresentativeDelta(p, c, dmatrix);
+		/* Does not accept solutions of same cost */
+		if (delta >= 0 && onlyImprove) return false;
+		set(p, c);
+		replaceRepresentative(p, curr, c);
+		return true;
+	}
+	
+	/**
+	 * Visits the best customer of each set given its neighbours in the route,
+	 * sweeping the route until no change improves it. Each sweep takes time
+	 * linear in the number of customers of the sets in the route, while
+	 * {@link #findShortestPath} is quadratic in the size of the sets.
+	 * @param dmatrix - distance matrix
+	 * @return number of customers replaced
+	 */
+	public int improveRepresentatives(DistanceMatrix dmatrix) {
+		int numOfChanges = 0;
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			ListIterator<Customer> iterator = listIterator();
+			for (int p = 0; iterator.hasNext(); p++) {
+				Customer curr = iterator.next(), best = curr;
+				int bestDelta = 0;
+				int setId = curr.getSet().getId();
+				for (int a = arrays.setStart[setId]; a < arrays.setStart[setId+1]; a++) {
+					Customer c = arrays.customers[arrays.setMembers[a]];
+					if (c == curr) continue;
+					int delta = getRepresentativeDelta(p, c, dmatrix);
+					if (delta < bestDelta) {
+						bestDelta = delta;
+						best = c;
+					}
+				}
+				if (best == curr) continue;
+				iterator.set(best);
+				replaceRepresentative(p, curr, best);
+				++numOfChanges;
+				improved = true;
+			}
+		}
+		return numOfChanges;
+	}
+	
+	/**
+	 * Updates the array copy of the route, its hash and the route of
+	 * each customer after a customer has been replaced, which is not
+	 * a structural modification (the array copy must be up to date)
+	 */
+	private void replaceRepresentative(int p, Customer curr, Customer c) {
+		Customer prev = p > 0 ? snapshot[p-1] : null;
+		Customer next = p < size()-1 ? snapshot[p+1] : null;
+		hash += getEdgeKey(prev, c) + getEdgeKey(c, next) - getEdgeKey(prev, curr) - getEdgeKey(curr, next);
+		snapshot[p] = c;
+		positionOf[c.getId()] = p;
+		unmapCustomer(curr); /* Customer curr is not in a route anymore */
+		mapCustomer(c); /* Customer c is in this route now */
+	}
+	
 	public void findShortestPath(DistanceMatrix dmatrix) {
 		if (isEmpty()) return; /* Do nothing for empty routes */
 		
-		ArrayList<Customer> newRoute = new ArrayList<>(size());
 		recalculateDistanceMap(0, 0, dmatrix); /* Update closest from depot from the left */
 		
 		/*
-		 * Bellman-Ford algorithm
+		 * Bellman-Ford algorithm, replacing customers in place
+		 * (only the set of the replaced customer is needed)
 		 */
 		
+		int [] setStart = arrays.setStart, setMembers = arrays.setMembers;
 		Customer previous = null;
-		for (Customer customer : this) {
-			int distanceFromRight = dRight.get(previous);
+		ListIterator<Customer> iterator = listIterator();
+		while (iterator.hasNext()) {
+			Customer customer = iterator.next();
+			/* Id of the previous point, where the depot is 0 */
+			int previousId = previous == null ? 0 : previous.getId();
+			int distanceFromRight = dRight[previousId];
 			/* Distance of previous point to right-hand side depot */
+			int [] row = dmatrix.getRow(previousId);
 			Customer closestCustomer = null;
-			for (Customer setCustomer : customer.getSet()) {
-				int distanceToCustomer;
-				if (previous == null) {
-					/* If set is the first set and last customer is the depot */
-					distanceToCustomer = dmatrix.getDistanceFromDepot(setCustomer);
-				} else {
-					/* If set is not the first set and there is a previous customer */
-					distanceToCustomer = dmatrix.getDistanceBetween(previous, setCustomer);
-				}
+			int setId = customer.getSet().getId();
+			for (int a = setStart[setId]; a < setStart[setId+1]; a++) {
+				int setCustomer = setMembers[a];
 				/* Check if set customer is the chosen one */
-				if (distanceToCustomer + dRight.get(setCustomer) == distanceFromRight) {
-					closestCustomer = setCustomer;
+				if (row[setCustomer] + dRight[setCustomer] == distanceFromRight) {
+					closestCustomer = arrays.customers[setCustomer];
 					break;
 				}
 			}
 			previous = closestCustomer;
-			newRoute.add(previous);
+			
+			/* Updates customer route and route itself */
+			unmapCustomer(customer); /* Customer may not be in a route anymore */
+			iterator.set(closestCustomer);
+			mapCustomer(closestCustomer); /* New customer is in this route now */
 		}
-
-		/* Updates customer route and route itself */
-		replaceAll((c) -> {
-			map.put(c, null); /* Customer c may not be in a route anymore */
-			Customer newCustomer = newRoute.get(indexOf(c));
-			map.put(newCustomer, this); /* New customer is in this route now */
-			return newCustomer;
-		});
+		snapshotModCount = -1; /* Replacing customers is not a structural modification */
 	}
 	
 }
@@ -1,7 +1,6 @@
 package gvrp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.StringJoiner;
 
@@ -9,7 +8,15 @@ import java.util.StringJoiner;
 public class Solution extends ArrayList<Route> {
 
 	Instance instance;
-	HashMap<Customer, Route> map;
+	
+	/* Route id (0 for none) and position of each customer,
+	 * indexed by customer id and shared by all routes */
+	int [] routeOf;
+	int [] positionOf;
+	
+	/* Id of the customer of each set that is in a route (0 for none),
+	 * indexed by set id and shared by all routes */
+	int [] routedCustomerOf;
 	
 	/**
 	 * @return the instance
@@ -20,82 +27,127 @@ public class Solution extends ArrayList<Route> {
 
 	public Solution(Instance instance) {
 		this.instance = instance;
-		this.map = new HashMap<Customer, Route>(instance.getNumberOfCustomers());
+		int dimension = instance.getArrays().customers.length;
+		this.routeOf = new int[dimension];
+		this.positionOf = new int[dimension];
+		this.routedCustomerOf = new int[instance.getArrays().demandOfSet.length];
 		DistanceMatrix dmatrix = instance.getDistancematrix();
 		int maxCap = instance.getCapacity();
 		for (int i = 1; i <= instance.getFleet(); i++) {
-			add(new Route(i, maxCap, dmatrix, map));
+			/* Route i is in position i-1 */
+			add(new Route(i, maxCap, dmatrix, instance.getArrays(), routeOf, positionOf, routedCustomerOf));
 		}
 	}
 	
 	public Solution(Solution anotherSolution) {
 		this.instance = anotherSolution.instance;
-		this.map = new HashMap<Customer, Route>(instance.getNumberOfCustomers());
-		this.map.putAll(anotherSolution.map);
-		for (Route route : anotherSolution) {
-			add(new Route(route, map));
-		}
+		this.routeOf = anotherSolution.routeOf.clone();
+		this.positionOf = anotherSolution.positionOf.clone();
+		this.routedCustomerOf = anotherSolution.routedCustomerOf.clone();
+		for (Route route : anotherSolution)
+			add(new Route(route, routeOf, positionOf, routedCustomerOf)); /* Same ids and positions */
 	}
 	
 	public boolean isValid(boolean printError) {
-		HashSet<Customer> customersInRoutes = new HashSet<Customer>();
-		HashSet<CustomerSet> customerSetInRoutes = new HashSet<CustomerSet>(); 
-		int customerCount = 0;
+		return isValid(printError, true);
+	}
+	
+	/**
+	 * Checks in a single pass over the routes, with bitsets of customers and
+	 * sets, that every set has exactly one customer in a non-empty route, and
+	 * that the route and position of every customer are up to date
+	 * @param printError - whether to print the first error found
+	 * @param checkCapacity - whether routes must be within the maximum capacity
+	 * (not when capacity is penalised)
+	 * @return whether the solution is valid
+	 */
+	public boolean isValid(boolean printError, boolean checkCapacity) {
+		InstanceArrays arrays = instance.getArrays();
+		long [] customersInRoutes = new long[(arrays.customers.length + 63) >>> 6];
+		long [] setsInRoutes = new long[(arrays.demandOfSet.length + 63) >>> 6];
+		int numOfCustomersInRoutes = 0;
 		for (Route route : this) {
-			int customersInRoute = route.size();
-			if (route.getCapacity() > instance.getCapacity()) {
-				if (printError) System.out.println("Route capacity surpasses maximum");
-				return false;
-			}
-			if (customersInRoute == 0) {
+			if (route.isEmpty()) {
 				if (printError) System.out.println("Empty route");
 				return false;
 			}
-			customerCount += customersInRoute;
-			customersInRoutes.addAll(route);
-			if (customerCount != customersInRoutes.size()) {
-				if (printError) System.out.println("Overlapping customer sets");
-				return false;
-			}
+			int load = 0, position = 0;
 			for (Customer customer : route) {
-				CustomerSet customerSet = customer.getSet();
-				if (!customerSetInRoutes.add(customerSet)) {
+				int id = customer.getId(), setId = arrays.setOf[id];
+				if ((customersInRoutes[id >>> 6] & (1L << id)) != 0) {
+					if (printError) System.out.println("Overlapping customer sets");
+					return false;
+				}
+				customersInRoutes[id >>> 6] |= 1L << id;
+				if ((setsInRoutes[setId >>> 6] & (1L << setId)) != 0) {
 					if (printError) System.out.println("More than one customer per group in route");
 					return false;
 				}
+				setsInRoutes[setId >>> 6] |= 1L << setId;
+				if (routeOf[id] != route.getId() || route.getPosition(customer) != position) {
+					if (printError) System.out.println("Customer C" + id + " is not mapped to its route and position");
+					return false;
+				}
+				if (routedCustomerOf[setId] != id) {
+					if (printError) System.out.println("Customer C" + id + " is not mapped as the one visited in its set");
+					return false;
+				}
+				load += arrays.demandOfSet[setId];
+				++position;
 			}
-		}
-		/* For redundancy, check also if all sets have exactly one customer in route */
-		for (CustomerSet set : instance.getSets()) {
-			int numOfCustomersInRoute = 0;
-			for (Customer setCustomer : set) {
-				if (isCustomerInRoute(setCustomer))
-					numOfCustomersInRoute++;
-			}
-			if (numOfCustomersInRoute == 0) {
-				if (printError) System.out.println("No customer from " + set.toCompactString() + " is in route.");
-			} else if(numOfCustomersInRoute > 1) {
-				if (printError) System.out.println("More than one customer from " + set.toCompactString() + " is in route.");
+			if (checkCapacity && load > instance.getCapacity()) {
+				if (printError) System.out.println("Route capacity surpasses maximum");
+				return false;
 			}
+			numOfCustomersInRoutes += position;
 		}
-		int numOfSets = getInstance().getSets().size();
-		if (customerSetInRoutes.size() != numOfSets) {
+		int numOfSets = instance.getNumberOfSets();
+		if (numOfCustomersInRoutes != numOfSets) {
 			if (printError) {
-				HashSet<CustomerSet> copyOfSets = new HashSet<>(getInstance().getSets());
-				copyOfSets.removeAll(customerSetInRoutes);
-				System.out.println("Not all customer sets are in routes (" + copyOfSets.size() + " remaining): " + copyOfSets);
+				StringJoiner sj = new StringJoiner(", ");
+				for (CustomerSet set : instance.getSets())
+					if ((setsInRoutes[set.getId() >>> 6] & (1L << set.getId())) == 0)
+						sj.add(set.toCompactString());
+				System.out.println("Not all customer sets are in routes (" + (numOfSets - numOfCustomersInRoutes) + " remaining): [" + sj + "]");
 			}
 			return false;
 		}
+		/* Customers out of routes must not be mapped to any */
+		int numOfMappedCustomers = 0;
+		for (int routeId : routeOf)
+			if (routeId != 0) ++numOfMappedCustomers;
+		if (numOfMappedCustomers != numOfCustomersInRoutes) {
+			if (printError) System.out.println("Customers out of routes are mapped to routes");
+			return false;
+		}
 		return true;
 	}
 	
 	public Route getCustomerRoute(Customer customer) {
-		return map.get(customer);
+		int routeId = routeOf[customer.getId()];
+		return routeId == 0 ? null : get(routeId - 1);
 	}
 	
 	public boolean isCustomerInRoute(Customer customer) {
-		return map.get(customer) != null;
+		return routeOf[customer.getId()] != 0;
+	}
+	
+	/**
+	 * @param customer - customer
+	 * @return position of the customer in its route, or -1 if it is in none
+	 */
+	public int getCustomerPosition(Customer customer) {
+		Route route = getCustomerRoute(customer);
+		return route == null ? -1 : route.getPosition(customer);
+	}
+	
+	/**
+	 * @param set - customer set
+	 * @return the customer of the set that is in a route, or {@code null} if none is
+	 */
+	public Customer getRoutedCustomer(CustomerSet set) {
+		int customerId = routedCustomerOf[set.getId()];
+		return customerId == 0 ? null : instance.getArrays().customers[customerId];
 	}
 	
 	public int getCost() {
@@ -106,11 +158,67 @@ public class Solution extends ArrayList<Route> {
 		return totalCost;
 	}
 	
+	/**
+	 * Allows routes to exceed the maximum capacity, for a cost
+	 * @param penalty - cost per unit of load above the maximum capacity
+	 * (negative if the maximum capacity can't be exceeded)
+	 */
+	public void setCapacityPenalty(double penalty) {
+		for (Route route : this) {
+			route.setCapacityPenalty(penalty);
+		}
+	}
+	
+	/**
+	 * @return whether no route exceeds the maximum capacity
+	 */
+	public boolean isFeasible() {
+		for (Route route : this) {
+			if (route.getCapacity() > route.getMaximumCapacity())
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return cost of the solution plus the penalties of routes
+	 * that exceed the maximum capacity
+	 */
+	public double getPenalisedCost() {
+		double totalCost = 0;
+		for (Route route : this) {
+			totalCost += route.getCost() + route.getLoadPenalty(route.getCapacity());
+		}
+		return totalCost;
+	}
+	
+	/**
+	 * Zobrist-style hash of the solution, which is the sum of the hashes
+	 * of its routes. It only changes along with the modified routes,
+	 * and equal solutions have equal hashes.
+	 * @return hash of the solution
+	 * @see Route#getHash()
+	 */
+	public long getHash() {
+		long hash = 0;
+		for (Route route : this) {
+			hash += route.getHash();
+		}
+		return hash;
+	}
+	
+	@Override
+	public int hashCode() {
+		long hash = getHash();
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof Solution) {
 			Solution sol = (Solution) o;
 			if (!getInstance().equals(sol.getInstance())) return false;
+			if (getHash() != sol.getHash()) return false;
 			HashSet<Route> routeSet = new HashSet<>(this);
 			HashSet<Route> otherRouteSet = new HashSet<>(sol);
 			return routeSet.equals(otherRouteSet);
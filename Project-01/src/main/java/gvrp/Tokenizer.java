@@ -0,0 +1,246 @@
+package gvrp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Splits an input stream into whitespace-separated tokens, like a
+ * {@link java.util.Scanner}, but reading bytes into its own buffer and parsing
+ * numbers straight from them, without regular expressions or creating strings.
+ *
+ * <p>Doubles are parsed exactly when they have at most 15 significant digits
+ * and small exponents (as in instance files). Other doubles are left to
+ * {@link Double#parseDouble}.
+ *
+ * <p>This class is copied in Project-02/src/main/java/mssc/Tokenizer.java
+ * ({@code mssc.Tokenizer}), as both projects build on their own:
+ * apply changes to both copies.
+ */
+public class Tokenizer implements Closeable {
+
+	static final int BUFFER_SIZE = 1 << 16;
+
+	/* Powers of ten that are exact doubles */
+	static final double [] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	InputStream in;
+	byte [] buffer = new byte[BUFFER_SIZE];
+	int position = 0, limit = 0;
+
+	/* Bytes of the last token read */
+	byte [] token = new byte[64];
+	int tokenLength = 0;
+
+	/**
+	 * @param in - input stream (closed along with the tokenizer)
+	 */
+	public Tokenizer(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * @param file - input file
+	 * @throws FileNotFoundException if the file can't be opened
+	 */
+	public Tokenizer(File file) throws FileNotFoundException {
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * @return next byte or -1 at the end of the input
+	 */
+	private int read() {
+		if (position == limit) {
+			try {
+				limit = in.read(buffer, 0, buffer.length);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	private static boolean isWhitespace(int b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+	}
+
+	/**
+	 * @return whether there is another token
+	 */
+	public boolean hasNext() {
+		int b = read();
+		while (b != -1 && isWhitespace(b)) b = read();
+		if (b == -1) return false;
+		--position; /* Unread the first byte of the token */
+		return true;
+	}
+
+	/**
+	 * Reads the next token into the token buffer
+	 * @throws NoSuchElementException if there are no more tokens
+	 */
+	private void readToken() {
+		int b = read();
+		while (b != -1 && isWhitespace(b)) b = read();
+		if (b == -1) throw new NoSuchElementException();
+		tokenLength = 0;
+		while (b != -1 && !isWhitespace(b)) {
+			if (tokenLength == token.length)
+				token = Arrays.copyOf(token, 2 * tokenLength);
+			token[tokenLength++] = (byte) b;
+			b = read();
+		}
+	}
+
+	private String tokenString() {
+		return new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return next token
+	 * @throws NoSuchElementException if there are no more tokens
+	 */
+	public String next() {
+		readToken();
+		return tokenString();
+	}
+
+	/**
+	 * Reads the next token, which must be the given keyword
+	 * @param keyword - expected token (ASCII)
+	 * @throws NoSuchElementException if there are no more tokens
+	 * @throws InputMismatchException if the token is another one
+	 */
+	public void expect(String keyword) {
+		readToken();
+		boolean matches = tokenLength == keyword.length();
+		for (int i = 0; matches && i < tokenLength; i++)
+			matches = token[i] == keyword.charAt(i);
+		if (!matches)
+			throw new InputMismatchException("Expected " + keyword + " but found " + tokenString());
+	}
+
+	/**
+	 * @return next token as an int
+	 * @throws NoSuchElementException if there are no more tokens
+	 * @throws InputMismatchException if the token is not an int
+	 */
+	public int nextInt() {
+		readToken();
+		int i = 0;
+		boolean negative = token[0] == '-';
+		if (negative || token[0] == '+') i++;
+		if (i == tokenLength) throw new InputMismatchException(tokenString());
+		long value = 0;
+		for (; i < tokenLength; i++) {
+			int digit = token[i] - '0';
+			if (digit < 0 || digit > 9) throw new InputMismatchException(tokenString());
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1) throw new InputMismatchException(tokenString());
+		}
+		if (negative) value = -value;
+		if (value > Integer.MAX_VALUE) throw new InputMismatchException(tokenString());
+		return (int) value;
+	}
+
+	/**
+	 * @return next token as a double (with a dot as decimal separator)
+	 * @throws NoSuchElementException if there are no more tokens
+	 * @throws InputMismatchException if the token is not a double
+	 */
+	public double nextDouble() {
+		readToken();
+		int i = 0;
+		boolean negative = token[0] == '-';
+		if (negative || token[0] == '+') i++;
+
+		/* Significant digits, up to 15, and the power of ten they are multiplied by */
+		long mantissa = 0;
+		int numOfDigits = 0, exponent = 0;
+		boolean exact = true, anyDigit = false;
+		for (; i < tokenLength && token[i] >= '0' && token[i] <= '9'; i++) {
+			anyDigit = true;
+			if (numOfDigits < 15) {
+				mantissa = mantissa * 10 + (token[i] - '0');
+				if (mantissa != 0) numOfDigits++;
+			} else {
+				exact &= token[i] == '0';
+				exponent++;
+			}
+		}
+		if (i < tokenLength && token[i] == '.') {
+			for (i++; i < tokenLength && token[i] >= '0' && token[i] <= '9'; i++) {
+				anyDigit = true;
+				if (numOfDigits < 15) {
+					mantissa = mantissa * 10 + (token[i] - '0');
+					if (mantissa != 0) numOfDigits++;
+					exponent--;
+				} else {
+					exact &= token[i] == '0';
+				}
+			}
+		}
+		if (anyDigit && i < tokenLength && (token[i] == 'e' || token[i] == 'E')) {
+			int j = i + 1;
+			boolean negativeExponent = j < tokenLength && token[j] == '-';
+			if (negativeExponent || (j < tokenLength && token[j] == '+')) j++;
+			int e = 0;
+			boolean anyExponentDigit = false;
+			for (; j < tokenLength && token[j] >= '0' && token[j] <= '9' && e < 10000; j++) {
+				anyExponentDigit = true;
+				e = e * 10 + (token[j] - '0');
+			}
+			if (anyExponentDigit) {
+				exponent += negativeExponent ? -e : e;
+				i = j;
+			}
+		}
+
+		if (anyDigit && i == tokenLength && exact) {
+			double value;
+			if (mantissa == 0) value = 0;
+			else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) value = mantissa * POWERS_OF_TEN[exponent];
+			else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) value = mantissa / POWERS_OF_TEN[-exponent];
+			else value = Double.NaN; /* Not exact */
+			if (!Double.isNaN(value)) return negative ? -value : value;
+		}
+
+		/* Long, special or malformed numbers */
+		String s = tokenString();
+		try {
+			return Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			throw new InputMismatchException(s);
+		}
+	}
+
+	/**
+	 * Closes the input stream (ignoring errors, like a scanner)
+	 */
+	@Override
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			/* Nothing to be done */
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package gvrp.acceptance;
+
+/**
+ * <p>Decides whether the local minimum found in an iteration of a search
+ * becomes the solution from which the next iteration departs.
+ *
+ * <p>Criteria may keep state (temperature, history...), so they expect
+ * {@link #accept(double, double, double)} to be called exactly once per
+ * iteration, after {@link #initialise(double)}.
+ */
+public interface AcceptanceCriterion {
+
+	/**
+	 * Prepares the criterion for a new search
+	 * @param initialCost - cost of the first local minimum
+	 */
+	public void initialise(double initialCost);
+
+	/**
+	 * @param candidateCost - cost of the new local minimum
+	 * @param currentCost - cost of the solution the iteration departed from
+	 * @param bestCost - cost of the best local minimum found so far
+	 * (all three penalised when the search penalises capacity)
+	 * @return whether the new local minimum is accepted
+	 */
+	public boolean accept(double candidateCost, double currentCost, double bestCost);
+
+	/**
+	 * @return whether every local minimum is accepted, in which case
+	 * searches don't need to keep a copy of the current solution
+	 */
+	public default boolean acceptsEverything() {
+		return false;
+	}
+
+}
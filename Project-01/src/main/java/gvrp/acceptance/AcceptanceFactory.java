@@ -0,0 +1,41 @@
+package gvrp.acceptance;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class AcceptanceFactory {
+
+	/* Names of the available criteria */
+	public static final List<String> NAMES = Arrays.asList("walk", "sa", "threshold", "rtr", "lahc");
+
+	/**
+	 * Creates an acceptance criterion
+	 * @param name - "walk" (random walk), "sa" (simulated annealing),
+	 * "threshold" (threshold accepting), "rtr" (record-to-record travel)
+	 * or "lahc" (late acceptance hill climbing)
+	 * @param seed - RNG seed
+	 * @param deviation - accepted worsening, as a fraction of the cost
+	 * (initial one for "sa" and "threshold")
+	 * @param decay - factor applied every iteration to the temperature
+	 * or threshold of "sa" and "threshold"
+	 * @param historyLength - history length of "lahc"
+	 * @return acceptance criterion or {@code null} if the name is invalid
+	 */
+	public static AcceptanceCriterion create(String name, long seed, double deviation, double decay, int historyLength) {
+		switch (name) {
+			case "walk":
+				return new RandomWalk();
+			case "sa":
+				return new SimulatedAnnealing(seed, deviation, decay);
+			case "threshold":
+				return new ThresholdAccepting(deviation, decay);
+			case "rtr":
+				return new RecordToRecord(deviation);
+			case "lahc":
+				return new LateAcceptance(historyLength);
+			default:
+				return null;
+		}
+	}
+
+}
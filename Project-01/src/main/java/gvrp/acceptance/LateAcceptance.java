@@ -0,0 +1,38 @@
+package gvrp.acceptance;
+
+import java.util.Arrays;
+
+/**
+ * <p>Late acceptance hill climbing: accepts local minima that are not worse
+ * than the current solution or than the current solution of a fixed number
+ * of iterations ago, kept in a circular history.
+ *
+ * <p>From the following paper:
+ * Burke E. K.; Bykov Y.;
+ * "The late acceptance hill-climbing heuristic"
+ */
+public class LateAcceptance implements AcceptanceCriterion {
+
+	double [] history;
+	long iteration;
+
+	/**
+	 * @param historyLength - number of iterations ago of the compared cost
+	 */
+	public LateAcceptance(int historyLength) {
+		this.history = new double[Math.max(historyLength, 1)];
+	}
+
+	public void initialise(double initialCost) {
+		Arrays.fill(history, initialCost);
+		iteration = 0;
+	}
+
+	public boolean accept(double candidateCost, double currentCost, double bestCost) {
+		int v = (int) (iteration++ % history.length);
+		boolean accepted = candidateCost <= currentCost || candidateCost <= history[v];
+		history[v] = accepted ? candidateCost : currentCost;
+		return accepted;
+	}
+
+}
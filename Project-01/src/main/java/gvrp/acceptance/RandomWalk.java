@@ -0,0 +1,20 @@
+package gvrp.acceptance;
+
+/**
+ * Accepts every local minimum, so that the search always
+ * departs from the last one found.
+ */
+public class RandomWalk implements AcceptanceCriterion {
+
+	public void initialise(double initialCost) {}
+
+	public boolean accept(double candidateCost, double currentCost, double bestCost) {
+		return true;
+	}
+
+	@Override
+	public boolean acceptsEverything() {
+		return true;
+	}
+
+}
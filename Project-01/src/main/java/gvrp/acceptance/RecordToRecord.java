@@ -0,0 +1,29 @@
+package gvrp.acceptance;
+
+/**
+ * <p>Accepts local minima that are not worse than the best local minimum
+ * (the record) by more than a fixed fraction of its cost.
+ *
+ * <p>From the following paper:
+ * Dueck G.;
+ * "New optimization heuristics: the great deluge algorithm and the
+ * record-to-record travel"
+ */
+public class RecordToRecord implements AcceptanceCriterion {
+
+	double deviation;
+
+	/**
+	 * @param deviation - accepted gap to the best solution, as a fraction of its cost
+	 */
+	public RecordToRecord(double deviation) {
+		this.deviation = deviation;
+	}
+
+	public void initialise(double initialCost) {}
+
+	public boolean accept(double candidateCost, double currentCost, double bestCost) {
+		return candidateCost <= currentCost || candidateCost <= bestCost * (1 + deviation);
+	}
+
+}
@@ -0,0 +1,43 @@
+package gvrp.acceptance;
+
+import java.util.Random;
+
+/**
+ * <p>Accepts worse local minima with probability {@code exp(-delta/T)},
+ * where the temperature T decays geometrically every iteration.
+ *
+ * <p>The initial temperature is set so that a local minimum worse by the
+ * given deviation (a fraction of the initial cost) is accepted half the time.
+ */
+public class SimulatedAnnealing implements AcceptanceCriterion {
+
+	Random random;
+	double deviation;
+	double decay;
+	double temperature;
+
+	/**
+	 * @param seed - RNG seed
+	 * @param deviation - worsening accepted half the time at first,
+	 * as a fraction of the initial cost
+	 * @param decay - factor applied to the temperature every iteration
+	 */
+	public SimulatedAnnealing(long seed, double deviation, double decay) {
+		this.random = new Random(seed);
+		this.deviation = deviation;
+		this.decay = decay;
+	}
+
+	public void initialise(double initialCost) {
+		temperature = deviation * initialCost / Math.log(2);
+	}
+
+	public boolean accept(double candidateCost, double currentCost, double bestCost) {
+		double delta = candidateCost - currentCost;
+		boolean accepted = delta <= 0 ||
+				(temperature > 0 && random.nextDouble() < Math.exp(-delta / temperature));
+		temperature *= decay;
+		return accepted;
+	}
+
+}
@@ -0,0 +1,37 @@
+package gvrp.acceptance;
+
+/**
+ * <p>Accepts local minima that are not worse than the current solution by
+ * more than a threshold, which decays geometrically every iteration.
+ *
+ * <p>From the following paper:
+ * Dueck G.; Scheuer T.;
+ * "Threshold accepting: a general purpose optimization algorithm appearing
+ * superior to simulated annealing"
+ */
+public class ThresholdAccepting implements AcceptanceCriterion {
+
+	double deviation;
+	double decay;
+	double threshold;
+
+	/**
+	 * @param deviation - initial threshold, as a fraction of the initial cost
+	 * @param decay - factor applied to the threshold every iteration
+	 */
+	public ThresholdAccepting(double deviation, double decay) {
+		this.deviation = deviation;
+		this.decay = decay;
+	}
+
+	public void initialise(double initialCost) {
+		threshold = deviation * initialCost;
+	}
+
+	public boolean accept(double candidateCost, double currentCost, double bestCost) {
+		boolean accepted = candidateCost - currentCost <= threshold;
+		threshold *= decay;
+		return accepted;
+	}
+
+}
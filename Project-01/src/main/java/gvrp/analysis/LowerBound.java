@@ -0,0 +1,225 @@
+package gvrp.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import gvrp.CustomerSet;
+import gvrp.Instance;
+
+/**
+ * <p>Lower bound on the cost of any solution of an instance, so that the
+ * search can stop once the gap to the best solution found is small enough.
+ *
+ * <p>All bounds work on the graph of customer sets and the depot, where the
+ * distance between two sets is the minimum distance between their customers
+ * (see {@link Instance#getSetDistance}).
+ * In any solution, every set has two incident edges and the depot has two
+ * per vehicle, where a route with a single set uses its depot edge twice.
+ *
+ * <ul>
+ * <li>The degree bound adds up the two shortest edges of every set and the
+ * shortest depot edges, and halves the total, since every edge is counted
+ * at both ends.</li>
+ * <li>The spanning forest bound uses the fact that, without the depot, the
+ * routes are paths that form a forest with one tree per vehicle. So it adds
+ * the minimum spanning forest with that many trees to the shortest depot
+ * edges.</li>
+ * <li>The Lagrangian bound relaxes the degree of every set in the spanning
+ * forest bound, with multipliers adjusted by subgradient optimisation, as in
+ * the Held-Karp bound for the travelling salesman problem.</li>
+ * </ul>
+ */
+public class LowerBound {
+
+	/* Subgradient optimisation parameters */
+	public static final int MAX_ITERATIONS = 300;
+	public static final int PATIENCE = 20;
+	public static final double MIN_STEP = 1E-4;
+
+	final int numOfSets;
+	final int fleet;
+	final int [][] setDistance;
+	final int [] depotDistance;
+
+	final int degreeBound;
+	final int spanningForestBound;
+	final int lagrangianBound;
+
+	/**
+	 * Computes the lower bound of an instance
+	 * @param instance - instance
+	 * @param upperBound - cost of any solution, which guides the subgradient
+	 * optimisation of the Lagrangian bound
+	 */
+	public LowerBound(Instance instance, int upperBound) {
+		ArrayList<CustomerSet> sets = instance.getSets();
+		numOfSets = sets.size();
+		fleet = instance.getFleet();
+
+		/* Minimum distances between sets and from the depot */
+		setDistance = new int[numOfSets][numOfSets];
+		depotDistance = new int[numOfSets];
+		for (int i = 0; i < numOfSets; i++) {
+			depotDistance[i] = instance.getDepotSetDistance(sets.get(i));
+			for (int j = 0; j < numOfSets; j++)
+				setDistance[i][j] = instance.getSetDistance(sets.get(i), sets.get(j));
+		}
+
+		/* Shortest depot edges, each set taking at most two of them */
+		int [] depotEdges = new int[2 * numOfSets];
+		for (int i = 0; i < numOfSets; i++)
+			depotEdges[2*i] = depotEdges[2*i+1] = depotDistance[i];
+		Arrays.sort(depotEdges);
+		long depotCost = 0;
+		for (int e = 0; e < Math.min(2 * fleet, depotEdges.length); e++)
+			depotCost += depotEdges[e];
+
+		/* Degree bound */
+		long degreeSum = depotCost;
+		for (int i = 0; i < numOfSets; i++) {
+			/* The depot edge may be used twice */
+			int first = depotDistance[i], second = depotDistance[i];
+			for (int j = 0; j < numOfSets; j++) {
+				if (i == j) continue;
+				int distance = setDistance[i][j];
+				if (distance < first) {
+					second = first;
+					first = distance;
+				} else if (distance < second) {
+					second = distance;
+				}
+			}
+			degreeSum += first + second;
+		}
+		degreeBound = (int) ((degreeSum + 1) / 2);
+
+		/* Spanning forest bound */
+		double [] multipliers = new double[numOfSets];
+		int [] degrees = new int[numOfSets];
+		spanningForestBound = (int) Math.ceil(relaxation(multipliers, degrees) - 1E-6);
+
+		/* Lagrangian bound */
+		double bestValue = spanningForestBound;
+		double step = 2.0;
+		int numOfNonImproving = 0;
+		for (int iteration = 0; iteration < MAX_ITERATIONS && step > MIN_STEP; iteration++) {
+			double value = relaxation(multipliers, degrees);
+			if (value > bestValue + 1E-9) {
+				bestValue = value;
+				numOfNonImproving = 0;
+			} else if (++numOfNonImproving >= PATIENCE) {
+				step /= 2;
+				numOfNonImproving = 0;
+			}
+			double norm = 0;
+			for (int i = 0; i < numOfSets; i++)
+				norm += (degrees[i] - 2) * (degrees[i] - 2);
+			if (norm == 0) break; /* Every set has two edges, so the relaxation is optimal */
+			double t = step * Math.max(upperBound - value, 1) / norm;
+			for (int i = 0; i < numOfSets; i++)
+				multipliers[i] += t * (degrees[i] - 2);
+		}
+		lagrangianBound = (int) Math.ceil(bestValue - 1E-6);
+	}
+
+	/**
+	 * Solves the spanning forest relaxation with the distances of every
+	 * set increased by its multiplier
+	 * @param multipliers - multiplier of each set
+	 * @param degrees - filled with the number of edges of each set
+	 * @return value of the relaxation
+	 */
+	private double relaxation(double [] multipliers, int [] degrees) {
+		Arrays.fill(degrees, 0);
+		double value = 0;
+		for (int i = 0; i < numOfSets; i++)
+			value -= 2 * multipliers[i];
+
+		/* Shortest depot edges, each set taking at most two of them */
+		Integer [] order = new Integer[numOfSets];
+		for (int i = 0; i < numOfSets; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Double.compare(depotDistance[a] + multipliers[a],
+				depotDistance[b] + multipliers[b]));
+		for (int e = 0; e < Math.min(2 * fleet, 2 * numOfSets); e++) {
+			int i = order[e / 2];
+			value += depotDistance[i] + multipliers[i];
+			++degrees[i];
+		}
+
+		/* Minimum spanning tree (Prim's algorithm), dropping the longest edges */
+		double [] closest = new double[numOfSets];
+		int [] parent = new int[numOfSets];
+		boolean [] inTree = new boolean[numOfSets];
+		Arrays.fill(closest, Double.POSITIVE_INFINITY);
+		Integer [] treeEdges = new Integer[Math.max(numOfSets - 1, 0)];
+		double [] edgeCosts = new double[numOfSets];
+		int [] edgeParents = new int[numOfSets];
+		for (int k = 0; k < numOfSets; k++) {
+			int next = -1;
+			for (int i = 0; i < numOfSets; i++)
+				if (!inTree[i] && (next < 0 || closest[i] < closest[next]))
+					next = i;
+			inTree[next] = true;
+			if (k > 0) {
+				treeEdges[k-1] = next;
+				edgeCosts[next] = closest[next];
+				edgeParents[next] = parent[next];
+			}
+			for (int i = 0; i < numOfSets; i++) {
+				if (inTree[i]) continue;
+				double cost = setDistance[next][i] + multipliers[next] + multipliers[i];
+				if (cost < closest[i]) {
+					closest[i] = cost;
+					parent[i] = next;
+				}
+			}
+		}
+		Arrays.sort(treeEdges, (a, b) -> Double.compare(edgeCosts[a], edgeCosts[b]));
+		for (int e = 0; e < numOfSets - fleet; e++) {
+			int i = treeEdges[e];
+			value += edgeCosts[i];
+			++degrees[i];
+			++degrees[edgeParents[i]];
+		}
+		return value;
+	}
+
+	/**
+	 * @return the best of all lower bounds
+	 */
+	public int getValue() {
+		return Math.max(degreeBound, Math.max(spanningForestBound, lagrangianBound));
+	}
+
+	/**
+	 * @return the degree lower bound
+	 */
+	public int getDegreeBound() {
+		return degreeBound;
+	}
+
+	/**
+	 * @return the spanning forest lower bound
+	 */
+	public int getSpanningForestBound() {
+		return spanningForestBound;
+	}
+
+	/**
+	 * @return the Lagrangian lower bound
+	 */
+	public int getLagrangianBound() {
+		return lagrangianBound;
+	}
+
+	/**
+	 * @param cost - cost of a solution
+	 * @return gap between the cost and the lower bound, as a fraction of the lower bound
+	 */
+	public double getGap(int cost) {
+		int value = getValue();
+		return value > 0 ? (double) (cost - value) / value : cost > 0 ? Double.POSITIVE_INFINITY : 0;
+	}
+
+}
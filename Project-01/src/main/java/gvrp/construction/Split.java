@@ -0,0 +1,142 @@
+package gvrp.construction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gvrp.Customer;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Split procedure for giant tours over customer sets.
+ *
+ * <p>A giant tour is a sequence of customers, one from each customer set,
+ * without any trip delimiters. Splitting it means finding the cheapest
+ * way of cutting the sequence into consecutive capacity-feasible routes.
+ *
+ * <p>Since every route is a contiguous segment of the tour, the cost of
+ * closing a route that starts right after position i and ends in position j
+ * can be written as {@code key(i) + D(j) + d0(j)}, where {@code key(i)} only
+ * depends on i. The best predecessor of j is then a sliding-window minimum
+ * over the positions whose segment load still fits the vehicle, which is
+ * kept in a monotone double-ended queue. Each layer of routes is therefore
+ * computed in O(n), and the whole procedure in O(n * fleet).
+ *
+ * <p>From the following paper:
+ * Vidal T.;
+ * "Split algorithm in O(n) for the capacitated vehicle routing problem"
+ */
+public class Split {
+
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	/**
+	 * Obtains the giant tour of a solution by concatenating its routes
+	 * @param solution - solution
+	 * @return list of all customers in route, in order
+	 */
+	public static ArrayList<Customer> giantTour(Solution solution) {
+		ArrayList<Customer> tour = new ArrayList<>(solution.getInstance().getNumberOfSets());
+		for (Route route : solution)
+			tour.addAll(route);
+		return tour;
+	}
+
+	/**
+	 * Optimally partitions a giant tour into exactly {@link Instance#getFleet()}
+	 * non-empty capacity-feasible routes, preserving the order of the tour.
+	 * Solutions must not have empty routes, which is why the number of routes is
+	 * fixed and not bounded.
+	 * @param instance - instance
+	 * @param tour - giant tour with one customer per customer set
+	 * @return solution or {@code null} if no feasible partition exists
+	 * @throws IllegalArgumentException if the tour does not cover every set
+	 */
+	public static Solution split(Instance instance, List<Customer> tour) throws IllegalArgumentException {
+		int n = tour.size();
+		int fleet = instance.getFleet();
+		int capacity = instance.getCapacity();
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+
+		if (n != instance.getNumberOfSets()) {
+			throw new IllegalArgumentException("Giant tour must have exactly one customer per set");
+		}
+		if (fleet > n) return null; /* Not enough customers for every route */
+
+		/* Arrays are indexed from 1 to n (tour positions)
+		 * d0[i] = distance from the depot to the i-th customer
+		 * dist[i] = distance travelled from the 1st to the i-th customer
+		 * load[i] = demand of the first i customers
+		 */
+		int [] d0 = new int[n+1];
+		int [] dist = new int[n+1];
+		int [] load = new int[n+1];
+		Customer previous = null;
+		for (int i = 1; i <= n; i++) {
+			Customer c = tour.get(i-1);
+			d0[i] = dmatrix.getDistanceFromDepot(c);
+			dist[i] = previous == null ? 0 : dist[i-1] + dmatrix.getDistanceBetween(previous, c);
+			load[i] = load[i-1] + c.getDemand();
+			previous = c;
+		}
+
+		/* potential[k][j] = cost of serving the first j customers with k routes
+		 * pred[k][j] = position where the k-th route begins (exclusive)
+		 */
+		int [][] potential = new int[fleet+1][n+1];
+		int [][] pred = new int[fleet+1][n+1];
+		for (int [] layer : potential)
+			Arrays.fill(layer, INFINITY);
+		potential[0][0] = 0;
+
+		/* Monotone queue of route starts, stored in queue[head..tail) */
+		int [] queue = new int[n+1];
+		for (int k = 1; k <= fleet; k++) {
+			int head = 0, tail = 0;
+			int [] previousLayer = potential[k-1];
+			/* The last fleet-k customers are left for the remaining routes */
+			for (int j = k; j <= n - (fleet - k); j++) {
+				/* Position j-1 becomes a candidate route start */
+				int i = j - 1;
+				if (previousLayer[i] != INFINITY) {
+					int key = key(previousLayer, d0, dist, i);
+					while (head < tail && key(previousLayer, d0, dist, queue[tail-1]) >= key)
+						--tail;
+					queue[tail++] = i;
+				}
+				/* Older route starts accumulate more load */
+				while (head < tail && load[j] - load[queue[head]] > capacity)
+					++head;
+				if (head == tail) continue;
+				int best = queue[head];
+				potential[k][j] = key(previousLayer, d0, dist, best) + dist[j] + d0[j];
+				pred[k][j] = best;
+			}
+		}
+
+		if (potential[fleet][n] == INFINITY) return null; /* Infeasible tour */
+
+		/* Rebuilds routes from the last to the first */
+		Solution solution = new Solution(instance);
+		int end = n;
+		for (int k = fleet; k >= 1; k--) {
+			int begin = pred[k][end];
+			Route route = solution.get(k-1);
+			route.addCustomers(tour.subList(begin, end), dmatrix);
+			end = begin;
+		}
+		return solution;
+	}
+
+	/**
+	 * Part of the cost of a route beginning right after position i that
+	 * does not depend on where the route ends
+	 */
+	private static int key(int [] potential, int [] d0, int [] dist, int i) {
+		return potential[i] + d0[i+1] - dist[i+1];
+	}
+
+}
@@ -0,0 +1,18 @@
+package gvrp.jcommander;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+import gvrp.acceptance.AcceptanceFactory;
+
+public class AcceptanceCriterionName implements IParameterValidator {
+
+	@Override
+	public void validate(String name, String value) throws ParameterException {
+		if (!AcceptanceFactory.NAMES.contains(value)) {
+			throw new ParameterException("Parameter " + name
+					+ " should be one of " + AcceptanceFactory.NAMES + " (found " + value + ")");
+		}
+	}
+
+}
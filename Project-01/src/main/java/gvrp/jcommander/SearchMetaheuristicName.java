@@ -0,0 +1,18 @@
+package gvrp.jcommander;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+import gvrp.Main;
+
+public class SearchMetaheuristicName implements IParameterValidator {
+
+	@Override
+	public void validate(String name, String value) throws ParameterException {
+		if (!Main.SEARCH_METAHEURISTICS.contains(value)) {
+			throw new ParameterException("Parameter " + name
+					+ " should be one of " + Main.SEARCH_METAHEURISTICS + " (found " + value + ")");
+		}
+	}
+
+}
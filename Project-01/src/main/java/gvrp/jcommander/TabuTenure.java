@@ -0,0 +1,22 @@
+package gvrp.jcommander;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+public class TabuTenure implements IParameterValidator {
+
+	@Override
+	public void validate(String name, String value) throws ParameterException {
+		int tenure;
+		try {
+			tenure = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			tenure = 0;
+		}
+		if (tenure < 1) {
+			throw new ParameterException("Parameter " + name
+					+ " should be a number of iterations of at least 1 (found " + value + ")");
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package gvrp.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * <p>Adaptive order of the neighbourhood levels of the {@link LocalSearch}.
+ *
+ * <p>Every time a level is explored, its weight is updated with the cost
+ * improvement it achieved per millisecond of CPU time, through exponential
+ * smoothing. Each local search then explores the levels in an order sampled
+ * by roulette from these weights, and leaves out the levels whose weight is
+ * negligible, except for an occasional exploration run. Levels never
+ * explored yet always come first.
+ *
+ * <p>Only the descent of {@link LocalSearch#findLocalMinimum} is adapted.
+ * Perturbations apply random moves that need not improve the solution,
+ * so they keep cycling through the levels.
+ *
+ * <p>The same instance can be shared by local searches running in different
+ * threads, so that they learn together. Only the weights are shared: each
+ * local search samples its orders with its own random stream.
+ */
+public class AdaptiveOperatorSelection {
+
+	/* Weight of the last reward in exponential smoothing */
+	public static final double REACTION = 0.1;
+
+	/* Fraction of the total weight below which a level is negligible */
+	public static final double NEGLIGIBLE = 0.01;
+
+	/* Probability of exploring a negligible level anyway */
+	public static final double EXPLORATION = 0.05;
+
+	static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	double [] weights;
+	long [] numOfAttempts;
+	long [] numOfSuccesses;
+	double [] totalGains;
+	long [] totalCpuNanos;
+
+	public AdaptiveOperatorSelection() {
+		int numOfLevels = LocalSearch.LEVEL_LABELS.length;
+		weights = new double[numOfLevels];
+		numOfAttempts = new long[numOfLevels];
+		numOfSuccesses = new long[numOfLevels];
+		totalGains = new double[numOfLevels];
+		totalCpuNanos = new long[numOfLevels];
+	}
+
+	/**
+	 * @return CPU time of the current thread in nanoseconds, or
+	 * the wall-clock time if it is not supported
+	 */
+	static long getCpuTime() {
+		if (threadBean.isCurrentThreadCpuTimeSupported())
+			return threadBean.getCurrentThreadCpuTime();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Samples the order in which levels are explored
+	 * @param random - random stream of the calling local search
+	 * @return level indices
+	 */
+	public synchronized int [] getOrder(SplittableRandom random) {
+		int numOfLevels = weights.length;
+		double totalWeight = 0;
+		for (int l = 0; l < numOfLevels; l++)
+			totalWeight += weights[l];
+
+		int [] order = new int[numOfLevels];
+		int size = 0;
+
+		/* Levels that were never explored come first */
+		for (int l = 0; l < numOfLevels; l++)
+			if (numOfAttempts[l] == 0)
+				order[size++] = l;
+
+		/* Other levels are included unless their weight is negligible */
+		int [] candidates = new int[numOfLevels];
+		int numOfCandidates = 0;
+		for (int l = 0; l < numOfLevels; l++) {
+			if (numOfAttempts[l] == 0) continue;
+			if (totalWeight > 0 && weights[l] < NEGLIGIBLE * totalWeight &&
+					random.nextDouble() >= EXPLORATION) continue;
+			candidates[numOfCandidates++] = l;
+		}
+
+		/* Roulette sampling without replacement */
+		while (numOfCandidates > 0) {
+			double candidatesWeight = 0;
+			for (int i = 0; i < numOfCandidates; i++)
+				candidatesWeight += weights[candidates[i]];
+			int chosen = numOfCandidates - 1;
+			if (candidatesWeight > 0) {
+				double r = random.nextDouble() * candidatesWeight;
+				for (int i = 0; i < numOfCandidates; i++) {
+					r -= weights[candidates[i]];
+					if (r < 0) {
+						chosen = i;
+						break;
+					}
+				}
+			} else {
+				chosen = random.nextInt(numOfCandidates);
+			}
+			order[size++] = candidates[chosen];
+			candidates[chosen] = candidates[--numOfCandidates];
+		}
+
+		return Arrays.copyOf(order, size);
+	}
+
+	/**
+	 * Updates the weight of a level after exploring it
+	 * @param level - level index
+	 * @param gain - cost improvement (non-negative)
+	 * @param cpuNanos - CPU time taken, in nanoseconds
+	 */
+	public synchronized void register(int level, double gain, long cpuNanos) {
+		double reward = gain / Math.max(cpuNanos / 1E6, 1E-3); /* per millisecond */
+		if (numOfAttempts[level] == 0)
+			weights[level] = reward;
+		else
+			weights[level] = (1 - REACTION) * weights[level] + REACTION * reward;
+		++numOfAttempts[level];
+		if (gain > 0) ++numOfSuccesses[level];
+		totalGains[level] += gain;
+		totalCpuNanos[level] += cpuNanos;
+	}
+
+	/**
+	 * @return number of levels
+	 */
+	public int getNumberOfLevels() {
+		return weights.length;
+	}
+
+	/**
+	 * @param level - level index
+	 * @return name of the level
+	 */
+	public String getLabel(int level) {
+		return LocalSearch.LEVEL_LABELS[level];
+	}
+
+	/**
+	 * @param level - level index
+	 * @return current weight of the level, normalised so that all weights add up to 1
+	 */
+	public synchronized double getWeight(int level) {
+		double totalWeight = 0;
+		for (double weight : weights)
+			totalWeight += weight;
+		return totalWeight > 0 ? weights[level] / totalWeight : 1.0 / weights.length;
+	}
+
+	/**
+	 * @param level - level index
+	 * @return fraction of explorations of the level that improved the solution
+	 */
+	public synchronized double getSuccessRate(int level) {
+		return numOfAttempts[level] == 0 ? 0 : (double) numOfSuccesses[level] / numOfAttempts[level];
+	}
+
+	/**
+	 * @param level - level index
+	 * @return number of explorations of the level
+	 */
+	public synchronized long getNumberOfAttempts(int level) {
+		return numOfAttempts[level];
+	}
+
+	/**
+	 * @param level - level index
+	 * @return total cost improvement of the level
+	 */
+	public synchronized double getTotalGain(int level) {
+		return totalGains[level];
+	}
+
+	/**
+	 * @param level - level index
+	 * @return total CPU time taken by the level, in milliseconds
+	 */
+	public synchronized double getTotalCpuTime(int level) {
+		return totalCpuNanos[level] / 1E6;
+	}
+
+}
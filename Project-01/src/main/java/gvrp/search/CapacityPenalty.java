@@ -0,0 +1,81 @@
+package gvrp.search;
+
+import java.util.ArrayList;
+
+import gvrp.Customer;
+import gvrp.CustomerSet;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+
+/**
+ * <p>Adaptive penalty coefficient for routes that exceed the maximum capacity.
+ *
+ * <p>Every {@link #WINDOW} local minima, the fraction of capacity-feasible ones
+ * is compared with the target fraction. If there are too few feasible local
+ * minima, the penalty is increased, and if there are too many, it is decreased.
+ */
+public class CapacityPenalty {
+
+	/* Number of local minima between adjustments */
+	public static final int WINDOW = 50;
+
+	/* Bounds of the penalty coefficient */
+	public static final double MIN_PENALTY = 0.1;
+	public static final double MAX_PENALTY = 100000.0;
+
+	/* Tolerance around the target fraction */
+	public static final double TOLERANCE = 0.05;
+
+	double penalty;
+	double targetFeasibleFraction;
+	int numOfFeasible = 0;
+	int numOfSamples = 0;
+
+	/**
+	 * The initial penalty is the ratio between the largest distance
+	 * and the largest demand
+	 * @param instance - instance
+	 * @param targetFeasibleFraction - target fraction of feasible local minima
+	 */
+	public CapacityPenalty(Instance instance, double targetFeasibleFraction) {
+		this.targetFeasibleFraction = targetFeasibleFraction;
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		ArrayList<Customer> customers = instance.getCustomers();
+		int maxDistance = 0, maxDemand = 1;
+		for (Customer ci : customers) {
+			for (Customer cj : customers) {
+				maxDistance = Math.max(maxDistance, dmatrix.getDistanceBetween(ci, cj));
+			}
+		}
+		for (CustomerSet set : instance.getSets()) {
+			maxDemand = Math.max(maxDemand, set.getDemand());
+		}
+		penalty = Math.max(MIN_PENALTY, Math.min(1000.0, (double) maxDistance / maxDemand));
+	}
+
+	/**
+	 * @return the current penalty coefficient
+	 */
+	public double getPenalty() {
+		return penalty;
+	}
+
+	/**
+	 * Registers whether a local minimum was capacity-feasible
+	 * @param feasible - whether the local minimum was feasible
+	 * @return whether the penalty coefficient has changed
+	 */
+	public boolean register(boolean feasible) {
+		if (feasible) ++numOfFeasible;
+		if (++numOfSamples < WINDOW) return false;
+		double feasibleFraction = (double) numOfFeasible / numOfSamples;
+		numOfFeasible = numOfSamples = 0;
+		double previousPenalty = penalty;
+		if (feasibleFraction < targetFeasibleFraction - TOLERANCE)
+			penalty = Math.min(MAX_PENALTY, penalty * 1.2);
+		else if (feasibleFraction > targetFeasibleFraction + TOLERANCE)
+			penalty = Math.max(MIN_PENALTY, penalty * 0.85);
+		return penalty != previousPenalty;
+	}
+
+}
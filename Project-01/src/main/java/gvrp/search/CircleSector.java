@@ -0,0 +1,75 @@
+package gvrp.search;
+
+import gvrp.Customer;
+import gvrp.Point;
+import gvrp.Route;
+
+/**
+ * <p>Smallest circular sector around the depot that encloses all the customers
+ * of a route. Angles are discretised in 65536 units, so that all arithmetic is
+ * done with integers modulo 65536.
+ *
+ * <p>Two routes whose sectors do not overlap are unlikely to have profitable
+ * exchanges between them, so route-pair neighbourhoods can skip them.
+ */
+public class CircleSector {
+
+	static final int UNITS = 65536;
+
+	int start, end;
+	boolean empty = true;
+
+	/**
+	 * Constructs the sector of a route
+	 * @param route - route
+	 * @param depot - depot position
+	 */
+	public CircleSector(Route route, Point depot) {
+		for (Customer c : route)
+			extend(angle(depot, c.getPoint()));
+	}
+
+	static int positiveMod(int i) {
+		return ((i % UNITS) + UNITS) % UNITS;
+	}
+
+	/**
+	 * @return the angle of a point around the depot, in discrete units
+	 */
+	static int angle(Point depot, Point point) {
+		double theta = depot.angleFrom(point); /* from -pi to pi */
+		return positiveMod((int) (theta / Math.PI * (UNITS / 2)));
+	}
+
+	boolean isEnclosed(int point) {
+		return positiveMod(point - start) <= positiveMod(end - start);
+	}
+
+	/**
+	 * Extends the sector so that it encloses a given angle,
+	 * growing in the direction that makes it smaller
+	 * @param point - angle in discrete units
+	 */
+	void extend(int point) {
+		if (empty) {
+			start = end = point;
+			empty = false;
+		} else if (!isEnclosed(point)) {
+			if (positiveMod(point - end) <= positiveMod(start - point))
+				end = point;
+			else
+				start = point;
+		}
+	}
+
+	/**
+	 * @param other - another sector
+	 * @return whether the two sectors overlap
+	 */
+	public boolean overlaps(CircleSector other) {
+		if (empty || other.empty) return false;
+		return positiveMod(other.start - start) <= positiveMod(end - start) ||
+				positiveMod(start - other.start) <= positiveMod(other.end - other.start);
+	}
+
+}
@@ -0,0 +1,176 @@
+package gvrp.search;
+
+import gvrp.Customer;
+import gvrp.DistanceMatrix;
+import gvrp.GammaSet;
+import gvrp.Instance;
+import gvrp.InstanceArrays;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Ejection chains of customer relocations between routes.
+ *
+ * <p>A customer is relocated next to one of its gamma neighbours, in a route
+ * that can only take it if another customer is ejected. The ejected customer
+ * is then relocated the same way, and so on, until a customer fits in a route
+ * without any ejection. Every route takes part in the chain at most once.
+ *
+ * <p>Chains are searched by a depth-first search bounded by the maximum number
+ * of ejections and by the gain criterion: a chain is only extended while the
+ * cost variation of the moves made so far is negative. The first improving
+ * chain found is applied.
+ */
+public class EjectionChain {
+
+	final int maxDepth;
+
+	Solution solution;
+	GammaSet gamma;
+	InstanceArrays arrays;
+	int capacity;
+	SolutionSnapshot snapshot;
+
+	/* Current chain, where the k-th customer moves to the k-th route,
+	 * before the k-th position, ejecting the customer in the k-th
+	 * ejection position (or -1, if it is the last of the chain) */
+	Customer [] chainCustomers;
+	int [] chainRoutes;
+	int [] chainPositions;
+	int [] chainEjections;
+	boolean [] inChain;
+
+	/**
+	 * @param maxDepth - maximum number of ejected customers in a chain
+	 */
+	public EjectionChain(int maxDepth) {
+		this.maxDepth = maxDepth;
+		chainCustomers = new Customer[maxDepth+1];
+		chainRoutes = new int[maxDepth+1];
+		chainPositions = new int[maxDepth+1];
+		chainEjections = new int[maxDepth+1];
+	}
+
+	/**
+	 * Takes a snapshot of a solution, which must be done before searching
+	 * for chains and is kept up to date while chains are applied through
+	 * {@link #apply(Customer)}
+	 * @param solution - solution
+	 */
+	public void load(Solution solution) {
+		Instance instance = solution.getInstance();
+		this.solution = solution;
+		this.gamma = instance.getGammaSet();
+		this.arrays = instance.getArrays();
+		this.capacity = instance.getCapacity();
+		this.snapshot = new SolutionSnapshot(solution);
+		this.inChain = new boolean[solution.size()];
+	}
+
+	/**
+	 * Searches for an improving ejection chain that begins by relocating
+	 * a given customer, and applies it
+	 * @param c - customer in route
+	 * @return whether an improving chain was applied
+	 */
+	public boolean apply(Customer c) {
+		if (maxDepth < 1 || !solution.isCustomerInRoute(c)) return false;
+		/* With penalised capacity, routes are never blocked */
+		if (solution.get(0).getCapacityPenalty() >= 0) return false;
+
+		int r = snapshot.routeOf[c.getId()];
+		if (snapshot.routes[r].length < 2) return false; /* Can't leave the route empty */
+		int removalDelta = snapshot.removalDelta(r, snapshot.positionOf[c.getId()]);
+
+		inChain[r] = true;
+		boolean found = search(c, removalDelta, 0);
+		inChain[r] = false;
+		if (!found) return false;
+
+		applyChain(r, c);
+		return true;
+	}
+
+	/**
+	 * Depth-first search of the rest of the chain
+	 * @param c - customer that must be relocated
+	 * @param partialDelta - cost variation of the chain so far
+	 * @param depth - number of customers ejected so far
+	 * @return whether an improving chain was found
+	 */
+	private boolean search(Customer c, int partialDelta, int depth) {
+		int demand = arrays.getDemand(c.getId());
+		for (Customer neighbour : gamma.getClosestNeighbours(c)) {
+			if (!solution.isCustomerInRoute(neighbour)) continue;
+			int t = snapshot.routeOf[neighbour.getId()];
+			if (inChain[t]) continue;
+			Customer [] route = snapshot.routes[t];
+			int neighbourPosition = snapshot.positionOf[neighbour.getId()];
+			/* Before and after the neighbour */
+			for (int i = neighbourPosition; i <= neighbourPosition + 1; i++) {
+				chainCustomers[depth] = c;
+				chainRoutes[depth] = t;
+				chainPositions[depth] = i;
+				if (snapshot.loads[t] + demand <= capacity) {
+					/* Closes the chain (plain shifts are left to the local search) */
+					if (depth == 0) continue;
+					if (partialDelta + snapshot.insertionDelta(t, i, c) < 0) {
+						chainEjections[depth] = -1;
+						return true;
+					}
+				} else if (depth < maxDepth) {
+					/* Ejects a customer */
+					inChain[t] = true;
+					for (int e = 0; e < route.length; e++) {
+						Customer ejected = route[e];
+						if (snapshot.loads[t] + demand - arrays.getDemand(ejected.getId()) > capacity) continue;
+						int delta = partialDelta + ejectionDelta(t, c, i, e);
+						if (delta >= 0) continue; /* Gain criterion */
+						chainEjections[depth] = e;
+						if (search(ejected, delta, depth + 1)) {
+							inChain[t] = false;
+							return true;
+						}
+					}
+					inChain[t] = false;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Cost variation of inserting a customer before position i
+	 * of a route while ejecting the customer in position e
+	 */
+	private int ejectionDelta(int t, Customer c, int i, int e) {
+		if (e == i - 1 || e == i) /* The ejected customer is replaced */
+			return snapshot.replacementDelta(t, e, c);
+		return snapshot.insertionDelta(t, i, c) + snapshot.removalDelta(t, e);
+	}
+
+	/**
+	 * Applies the chain found by the search
+	 * @param r - index of the route of the first customer
+	 * @param first - first customer of the chain
+	 */
+	private void applyChain(int r, Customer first) {
+		DistanceMatrix dmatrix = snapshot.dmatrix;
+		solution.get(r).removeCustomer(first, dmatrix);
+		solution.get(r).findShortestPath(dmatrix);
+		snapshot.reload(r);
+		for (int k = 0; k <= maxDepth; k++) {
+			int t = chainRoutes[k], i = chainPositions[k], e = chainEjections[k];
+			Route route = solution.get(t);
+			if (e >= 0) {
+				route.removeCustomer(snapshot.routes[t][e], dmatrix);
+				if (e < i) --i;
+			}
+			route.insertCustomer(i, chainCustomers[k], dmatrix);
+			route.findShortestPath(dmatrix);
+			snapshot.reload(t);
+			if (e < 0) break; /* Last relocation */
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package gvrp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import gvrp.Customer;
+import gvrp.CustomerSet;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Exact solver for instances with few customer sets, by dynamic
+ * programming over subsets of sets.
+ *
+ * <p>First, the shortest route through each subset of sets within the vehicle
+ * capacity is found by a Held-Karp recursion over (subset, last customer),
+ * which also chooses the customer visited in each set. Then, the cheapest
+ * partition of all sets into exactly one non-empty route per vehicle is found
+ * by a second recursion over (number of routes, subset). Time and memory grow
+ * exponentially with the number of sets, which is capped by {@link #MAX_SETS}.
+ */
+public class ExactSolver {
+
+	/* Maximum number of customer sets */
+	public static final int MAX_SETS = 16;
+
+	static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	final Instance instance;
+	final DistanceMatrix dmatrix;
+	final int numOfSets;
+	final int fullSet;
+
+	/* Customers, grouped by set, and the index of the set of each one */
+	Customer [] customers;
+	int [] setOf;
+	int [] firstOfSet; /* customers of set j are in [firstOfSet[j], firstOfSet[j+1]) */
+
+	/* path[S][c] = shortest path from the depot through the sets in S,
+	 * ending in customer c (whose set is in S)
+	 * routeCost[S] = shortest route through the sets in S, or infinity
+	 * partition[k][S] = cheapest k routes through the sets in S, or infinity */
+	int [][] path;
+	int [] routeCost;
+	int [][] partition;
+
+	private ExactSolver(Instance instance) {
+		this.instance = instance;
+		this.dmatrix = instance.getDistancematrix();
+		this.numOfSets = instance.getSets().size();
+		this.fullSet = (1 << numOfSets) - 1;
+	}
+
+	/**
+	 * @param instance - instance
+	 * @return whether the instance is small enough to be solved
+	 */
+	public static boolean canSolve(Instance instance) {
+		return instance.getSets().size() <= MAX_SETS;
+	}
+
+	/**
+	 * Finds an optimal solution
+	 * @param instance - instance with at most {@link #MAX_SETS} sets
+	 * @return optimal solution, or {@code null} if there is no solution
+	 * with one non-empty route per vehicle
+	 * @throws IllegalArgumentException if the instance has too many sets
+	 */
+	public static Solution solve(Instance instance) {
+		if (!canSolve(instance))
+			throw new IllegalArgumentException("Instance has more than " + MAX_SETS + " sets");
+		ExactSolver solver = new ExactSolver(instance);
+		solver.findRoutes();
+		return solver.findPartition();
+	}
+
+	private int distance(int ci, int cj) {
+		return dmatrix.getDistanceBetween(customers[ci], customers[cj]);
+	}
+
+	private int distanceFromDepot(int c) {
+		return dmatrix.getDistanceFromDepot(customers[c]);
+	}
+
+	/**
+	 * Fills the shortest path and route of every subset of sets
+	 */
+	private void findRoutes() {
+		ArrayList<CustomerSet> sets = instance.getSets();
+		ArrayList<Customer> list = new ArrayList<>();
+		firstOfSet = new int[numOfSets + 1];
+		int [] demands = new int[numOfSets];
+		for (int j = 0; j < numOfSets; j++) {
+			firstOfSet[j] = list.size();
+			ArrayList<Customer> setCustomers = new ArrayList<>(sets.get(j));
+			Collections.sort(setCustomers, (a, b) -> Integer.compare(a.getId(), b.getId()));
+			list.addAll(setCustomers);
+			demands[j] = sets.get(j).getDemand();
+		}
+		firstOfSet[numOfSets] = list.size();
+		customers = list.toArray(new Customer[list.size()]);
+		setOf = new int[customers.length];
+		for (int j = 0; j < numOfSets; j++)
+			for (int c = firstOfSet[j]; c < firstOfSet[j+1]; c++)
+				setOf[c] = j;
+
+		int capacity = instance.getCapacity();
+		int [] load = new int[fullSet + 1];
+		path = new int[fullSet + 1][];
+		routeCost = new int[fullSet + 1];
+		Arrays.fill(routeCost, INFINITY);
+		for (int S = 1; S <= fullSet; S++) {
+			int lowest = Integer.numberOfTrailingZeros(S);
+			load[S] = load[S & (S - 1)] + demands[lowest];
+			/* Subsets of feasible subsets are feasible, as demands are non-negative */
+			if (load[S] > capacity) continue;
+			int [] f = path[S] = new int[customers.length];
+			Arrays.fill(f, INFINITY);
+			for (int j = 0; j < numOfSets; j++) {
+				if ((S & (1 << j)) == 0) continue;
+				int R = S ^ (1 << j);
+				for (int c = firstOfSet[j]; c < firstOfSet[j+1]; c++) {
+					if (R == 0) {
+						f[c] = distanceFromDepot(c);
+						continue;
+					}
+					int [] g = path[R];
+					for (int i = 0; i < numOfSets; i++) {
+						if ((R & (1 << i)) == 0) continue;
+						for (int b = firstOfSet[i]; b < firstOfSet[i+1]; b++)
+							f[c] = Math.min(f[c], g[b] + distance(b, c));
+					}
+				}
+			}
+			for (int c = 0; c < customers.length; c++)
+				if ((S & (1 << setOf[c])) != 0)
+					routeCost[S] = Math.min(routeCost[S], f[c] + distanceFromDepot(c));
+		}
+	}
+
+	/**
+	 * Finds the cheapest partition of all sets into routes
+	 * @return optimal solution or {@code null} if there is none
+	 */
+	private Solution findPartition() {
+		int fleet = instance.getFleet();
+		if (fleet > numOfSets) return null;
+		partition = new int[fleet + 1][];
+		partition[1] = routeCost;
+		for (int k = 2; k <= fleet; k++) {
+			int [] previous = partition[k-1];
+			int [] current = partition[k] = new int[fullSet + 1];
+			Arrays.fill(current, INFINITY);
+			for (int S = 1; S <= fullSet; S++) {
+				if (Integer.bitCount(S) < k) continue;
+				/* The route through the lowest set of S is chosen first */
+				int lowest = S & -S, rest = S ^ lowest;
+				for (int T = rest; ; T = (T - 1) & rest) {
+					int route = T | lowest;
+					if (route != S && routeCost[route] < INFINITY && previous[S ^ route] < INFINITY)
+						current[S] = Math.min(current[S], routeCost[route] + previous[S ^ route]);
+					if (T == 0) break;
+				}
+			}
+		}
+		if (partition[fleet][fullSet] >= INFINITY) return null;
+
+		/* Rebuilds the routes */
+		Solution solution = new Solution(instance);
+		int S = fullSet;
+		for (int k = fleet; k >= 1; k--) {
+			int route = S;
+			if (k > 1) {
+				int lowest = S & -S, rest = S ^ lowest;
+				for (int T = rest; ; T = (T - 1) & rest) {
+					route = T | lowest;
+					if (route != S && routeCost[route] < INFINITY && partition[k-1][S ^ route] < INFINITY &&
+							routeCost[route] + partition[k-1][S ^ route] == partition[k][S]) break;
+					if (T == 0) break;
+				}
+			}
+			solution.get(fleet - k).addCustomers(findRoute(route), dmatrix);
+			S ^= route;
+		}
+		return solution;
+	}
+
+	/**
+	 * @param S - subset of sets
+	 * @return customers of the shortest route through the sets in S
+	 */
+	private ArrayList<Customer> findRoute(int S) {
+		ArrayList<Customer> route = new ArrayList<>(Integer.bitCount(S));
+		int last = -1;
+		for (int c = 0; c < customers.length; c++) {
+			if ((S & (1 << setOf[c])) == 0) continue;
+			if (path[S][c] + distanceFromDepot(c) == routeCost[S]) {
+				last = c;
+				break;
+			}
+		}
+		while (true) {
+			route.add(customers[last]);
+			int R = S ^ (1 << setOf[last]);
+			if (R == 0) break;
+			int next = -1;
+			for (int b = 0; b < customers.length && next < 0; b++)
+				if ((R & (1 << setOf[b])) != 0 && path[R][b] + distance(b, last) == path[S][last])
+					next = b;
+			S = R;
+			last = next;
+		}
+		Collections.reverse(route);
+		return route;
+	}
+
+}
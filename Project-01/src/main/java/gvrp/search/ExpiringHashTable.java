@@ -0,0 +1,126 @@
+package gvrp.search;
+
+import java.util.Arrays;
+
+/**
+ * <p>Set of {@code long} keys that expire after a given iteration, stored in
+ * primitive arrays with open addressing (linear probing), so that no objects
+ * are allocated per entry.
+ *
+ * <p>Expired entries are reused by new keys and dropped when the table is
+ * rehashed, which happens whenever too many slots have been used.
+ */
+public class ExpiringHashTable {
+
+	/* Maximum fraction of used slots (live or expired) */
+	static final double MAX_LOAD = 0.5;
+
+	/* An expiry of 0 marks a slot that was never used */
+	long [] keys;
+	long [] expiries;
+	int mask;
+	int numOfUsedSlots = 0;
+
+	/**
+	 * @param expectedSize - expected number of live keys
+	 */
+	public ExpiringHashTable(int expectedSize) {
+		int capacity = 16;
+		while (capacity * MAX_LOAD < 2 * expectedSize) capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		expiries = new long[capacity];
+		mask = capacity - 1;
+		numOfUsedSlots = 0;
+	}
+
+	/**
+	 * Spreads the bits of a key (MurmurHash3 finaliser)
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb93fe53e9a63L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * Inserts a key or updates its expiry
+	 * @param key - key
+	 * @param expiry - first iteration in which the key is no longer in the table
+	 * (must be positive)
+	 * @param now - current iteration
+	 */
+	public void put(long key, long expiry, long now) {
+		int reusable = -1;
+		int slot = hash(key) & mask;
+		while (expiries[slot] != 0) {
+			if (keys[slot] == key) {
+				expiries[slot] = expiry;
+				return;
+			}
+			if (reusable < 0 && expiries[slot] <= now) reusable = slot;
+			slot = (slot + 1) & mask;
+		}
+		if (reusable < 0) {
+			reusable = slot;
+			++numOfUsedSlots;
+		}
+		keys[reusable] = key;
+		expiries[reusable] = expiry;
+		if (numOfUsedSlots > MAX_LOAD * keys.length) rehash(now);
+	}
+
+	/**
+	 * @param key - key
+	 * @param now - current iteration
+	 * @return whether the key is in the table and has not expired yet
+	 */
+	public boolean contains(long key, long now) {
+		int slot = hash(key) & mask;
+		while (expiries[slot] != 0) {
+			if (keys[slot] == key) return expiries[slot] > now;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @param now - current iteration
+	 * @return number of keys that have not expired yet
+	 */
+	public int size(long now) {
+		int size = 0;
+		for (long expiry : expiries)
+			if (expiry > now) ++size;
+		return size;
+	}
+
+	/**
+	 * Removes all keys
+	 */
+	public void clear() {
+		Arrays.fill(expiries, 0);
+		numOfUsedSlots = 0;
+	}
+
+	/**
+	 * Drops expired keys, doubling the table if it is
+	 * still too full with the live ones
+	 */
+	private void rehash(long now) {
+		long [] oldKeys = keys, oldExpiries = expiries;
+		int capacity = oldKeys.length;
+		if (size(now) > MAX_LOAD * capacity / 2) capacity <<= 1;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldExpiries[i] > now)
+				put(oldKeys[i], oldExpiries[i], now);
+	}
+
+}
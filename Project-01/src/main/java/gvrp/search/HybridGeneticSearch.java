@@ -0,0 +1,538 @@
+package gvrp.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import gvrp.Customer;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.Route;
+import gvrp.Solution;
+import gvrp.construction.InsertionHeuristics;
+import gvrp.construction.Split;
+
+/**
+ * <p>Population-based search in which offspring are generated by an ordered
+ * crossover (OX) of the parents' giant tours, decoded with {@link Split} and
+ * educated by {@link LocalSearch}. Survivors are chosen by their biased fitness,
+ * which ranks individuals both by cost and by their contribution to the
+ * diversity of the population.
+ *
+ * <p>From the following paper:
+ * Vidal T.; Crainic T. G.; Gendreau M.; Lahrichi N.; Rei W.;
+ * "A hybrid genetic algorithm for multidepot and periodic vehicle routing problems"
+ */
+public class HybridGeneticSearch {
+
+	/**
+	 * Hybrid genetic search builder
+	 */
+	public static class Builder {
+
+		long seed = 0;
+		int minPopulationSize = 25;
+		int generationSize = 40;
+		int numOfElite = 4;
+		int numOfClosest = 5;
+		int numOfThreads = 1;
+		int maxSegmentLength = 3;
+		int maxEjections = 2;
+		AdaptiveOperatorSelection operatorSelection = null;
+		VisitedSolutions visitedSolutions = null;
+		double granularity = 0;
+		boolean setNeighbourhoods = false;
+
+		/**
+		 * Constructs the builder
+		 */
+		public Builder() {}
+
+		/**
+		 * @param seed - RNG seed
+		 * @return builder
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * @param size - population size after survivor selection (mu)
+		 * @return builder
+		 */
+		public Builder minPopulationSize(int size) {
+			this.minPopulationSize = size;
+			return this;
+		}
+
+		/**
+		 * @param size - offspring generated before survivor selection (lambda)
+		 * @return builder
+		 */
+		public Builder generationSize(int size) {
+			this.generationSize = size;
+			return this;
+		}
+
+		/**
+		 * @param count - number of individuals ranked only by cost
+		 * @return builder
+		 */
+		public Builder numOfElite(int count) {
+			this.numOfElite = count;
+			return this;
+		}
+
+		/**
+		 * @param count - number of closest individuals taken into account
+		 * when measuring the diversity contribution
+		 * @return builder
+		 */
+		public Builder numOfClosest(int count) {
+			this.numOfClosest = count;
+			return this;
+		}
+
+		/**
+		 * @param count - number of offspring educated concurrently
+		 * @return builder
+		 */
+		public Builder numOfThreads(int count) {
+			this.numOfThreads = Math.max(count, 1);
+			return this;
+		}
+
+		/**
+		 * @param length - longest segment moved by CROSS-exchanges
+		 * during education
+		 * @return builder
+		 */
+		public Builder maxSegmentLength(int length) {
+			this.maxSegmentLength = length;
+			return this;
+		}
+
+		/**
+		 * @param depth - maximum number of customers ejected by an
+		 * ejection chain during education
+		 * @return builder
+		 */
+		public Builder maxEjections(int depth) {
+			this.maxEjections = depth;
+			return this;
+		}
+
+		/**
+		 * @param operatorSelection - weights of neighbourhood levels
+		 * learned by the local search (may be {@code null})
+		 * @return builder
+		 */
+		public Builder operatorSelection(AdaptiveOperatorSelection operatorSelection) {
+			this.operatorSelection = operatorSelection;
+			return this;
+		}
+
+		/**
+		 * @param visitedSolutions - recent local minima, where the
+		 * education of offspring stops early (may be {@code null})
+		 * @return builder
+		 */
+		public Builder visitedSolutions(VisitedSolutions visitedSolutions) {
+			this.visitedSolutions = visitedSolutions;
+			return this;
+		}
+
+		/**
+		 * @param granularity - maximum distance between the sets of
+		 * customers paired by the education of offspring, relative to the average
+		 * edge cost (0 disables it)
+		 * @return builder
+		 */
+		public Builder granularity(double granularity) {
+			this.granularity = granularity;
+			return this;
+		}
+
+		/**
+		 * @param setNeighbourhoods - whether the education of offspring pairs
+		 * customers with the customers in route of the closest sets
+		 * @return builder
+		 */
+		public Builder setNeighbourhoods(boolean setNeighbourhoods) {
+			this.setNeighbourhoods = setNeighbourhoods;
+			return this;
+		}
+
+		public HybridGeneticSearch build() {
+			return new HybridGeneticSearch(this);
+		}
+
+	}
+
+	/**
+	 * Population member, holding its solution and the data needed to
+	 * measure distances to other individuals
+	 */
+	static class Individual {
+
+		Solution solution;
+		int cost;
+		/* Indexed by set id (depot = 0) */
+		int [] successors;
+		int [] predecessors;
+		/* Distances to other individuals */
+		HashMap<Individual, Double> distances = new HashMap<>();
+		double averageDistanceToClosest;
+		double biasedFitness;
+
+		Individual(Solution solution) {
+			this.solution = solution;
+			this.cost = solution.getCost();
+			int numOfSets = solution.getInstance().getNumberOfSets();
+			successors = new int[numOfSets+1];
+			predecessors = new int[numOfSets+1];
+			for (Route route : solution) {
+				int previous = 0;
+				for (Customer c : route) {
+					int current = c.getSet().getId();
+					successors[previous] = current;
+					predecessors[current] = previous;
+					previous = current;
+				}
+				successors[previous] = 0;
+			}
+		}
+
+		/**
+		 * Broken pairs distance, at set level, ignoring route orientation
+		 * @param other - another individual
+		 * @return fraction of sets whose neighbours differ
+		 */
+		double distanceTo(Individual other) {
+			int numOfSets = successors.length - 1;
+			int differences = 0;
+			for (int s = 1; s <= numOfSets; s++) {
+				int succ = successors[s], otherSucc = other.successors[s];
+				if (succ != otherSucc && succ != other.predecessors[s])
+					++differences;
+				else if (predecessors[s] == 0 && other.predecessors[s] != 0 && other.successors[s] != 0)
+					++differences; /* Route start in this individual only */
+			}
+			return (double) differences / numOfSets;
+		}
+
+		/**
+		 * Updates the average distance to the closest individuals
+		 * @param numOfClosest - number of closest individuals
+		 */
+		void updateAverageDistanceToClosest(int numOfClosest) {
+			ArrayList<Double> sorted = new ArrayList<>(distances.values());
+			Collections.sort(sorted);
+			int count = Math.min(numOfClosest, sorted.size());
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+				sum += sorted.get(i);
+			averageDistanceToClosest = count == 0 ? 0.0 : sum / count;
+		}
+
+		boolean isClone() {
+			return distances.containsValue(0.0);
+		}
+
+	}
+
+	final long seed;
+	final int minPopulationSize;
+	final int generationSize;
+	final int numOfElite;
+	final int numOfClosest;
+	final int numOfThreads;
+	final int maxSegmentLength;
+	final int maxEjections;
+	final AdaptiveOperatorSelection operatorSelection;
+	final VisitedSolutions visitedSolutions;
+	final double granularity;
+	final boolean setNeighbourhoods;
+
+	Random random;
+	LocalSearch [] searches;
+	ArrayList<Individual> population = new ArrayList<>();
+
+	private HybridGeneticSearch(Builder builder) {
+		this.seed = builder.seed;
+		this.minPopulationSize = Math.max(builder.minPopulationSize, 2);
+		this.generationSize = Math.max(builder.generationSize, 1);
+		this.numOfElite = builder.numOfElite;
+		this.numOfClosest = Math.max(builder.numOfClosest, 1);
+		this.numOfThreads = builder.numOfThreads;
+		this.maxSegmentLength = builder.maxSegmentLength;
+		this.maxEjections = builder.maxEjections;
+		this.operatorSelection = builder.operatorSelection;
+		this.visitedSolutions = builder.visitedSolutions;
+		this.granularity = builder.granularity;
+		this.setNeighbourhoods = builder.setNeighbourhoods;
+	}
+
+	public Solution explore(Solution solution, Predicate<Solution> stoppingCriterion) {
+
+		/* Initialise population;
+		 * repeat:
+		 * 		P1, P2 ← BinaryTournament(population);
+		 * 		C ← Education(Split(Crossover(P1, P2)));
+		 * 		population ← population + C;
+		 * 		if |population| = mu + lambda then SurvivorSelection(population);
+		 * until stopping criterion is not satisfied anymore
+		 * return best individual;
+		 */
+
+		random = new Random(seed);
+		searches = new LocalSearch[numOfThreads];
+		for (int i = 0; i < numOfThreads; i++) {
+			searches[i] = new LocalSearch(seed + i);
+			searches[i].setMaximumSegmentLength(maxSegmentLength);
+			searches[i].setMaximumEjections(maxEjections);
+			searches[i].setAdaptiveOperatorSelection(operatorSelection);
+			searches[i].setVisitedSolutions(visitedSolutions);
+			searches[i].setGranularity(granularity);
+			searches[i].setSetNeighbourhoods(setNeighbourhoods);
+		}
+		population.clear();
+
+		ExecutorService executor = numOfThreads > 1 ? Executors.newFixedThreadPool(numOfThreads) : null;
+
+		try {
+			/* Initial population: perturbations of the initial solution,
+			 * possibly cut short by the stopping criterion on large instances */
+			searches[0].findLocalMinimum(solution);
+			Solution bestSolution = new Solution(solution);
+			int bestCost = bestSolution.getCost();
+			addIndividual(new Individual(bestSolution));
+			int numOfCustomers = solution.getInstance().getNumberOfCustomers();
+			while (population.size() < minPopulationSize && stoppingCriterion.test(bestSolution)) {
+				List<Callable<Solution>> tasks = new ArrayList<>(numOfThreads);
+				for (int i = 0; i < numOfThreads; i++) {
+					final LocalSearch ls = searches[i];
+					final int perturbationSize = 1 + random.nextInt(Math.max(numOfCustomers / 2, 1));
+					tasks.add(() -> {
+						Solution s = new Solution(solution);
+						ls.perturbSolution(s, perturbationSize);
+						ls.findLocalMinimum(s);
+						return s;
+					});
+				}
+				for (Solution s : run(executor, tasks)) {
+					Individual individual = new Individual(s);
+					addIndividual(individual);
+					if (individual.cost < bestCost) {
+						bestSolution = s;
+						bestCost = individual.cost;
+					}
+				}
+				updateBiasedFitness();
+			}
+
+			while (stoppingCriterion.test(bestSolution)) {
+				List<Callable<Solution>> tasks = new ArrayList<>(numOfThreads);
+				for (int i = 0; i < numOfThreads; i++) {
+					final LocalSearch ls = searches[i];
+					final ArrayList<Customer> tour = crossover(binaryTournament(), binaryTournament());
+					tasks.add(() -> {
+						Solution s = decode(solution.getInstance(), tour);
+						if (s == null) return null;
+						ls.findLocalMinimum(s);
+						return s;
+					});
+				}
+				for (Solution s : run(executor, tasks)) {
+					if (s == null) continue;
+					Individual offspring = new Individual(s);
+					addIndividual(offspring);
+					if (offspring.cost < bestCost) {
+						bestSolution = s;
+						bestCost = offspring.cost;
+					}
+				}
+				updateBiasedFitness();
+				if (population.size() >= minPopulationSize + generationSize)
+					selectSurvivors();
+			}
+
+			return bestSolution;
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs tasks either sequentially or concurrently
+	 * @return results, in the same order as the tasks
+	 */
+	private List<Solution> run(ExecutorService executor, List<Callable<Solution>> tasks) {
+		ArrayList<Solution> results = new ArrayList<>(tasks.size());
+		try {
+			if (executor == null) {
+				for (Callable<Solution> task : tasks)
+					results.add(task.call());
+			} else {
+				for (Future<Solution> future : executor.invokeAll(tasks))
+					results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return results;
+	}
+
+	/**
+	 * Decodes a giant tour into a solution with {@link Split}. If the tour
+	 * can't be split, customers are packed in order and the ones left out
+	 * are inserted by {@link InsertionHeuristics#fixSolution}.
+	 * @return solution or {@code null} if no valid solution could be decoded
+	 */
+	static Solution decode(Instance instance, ArrayList<Customer> tour) {
+		Solution solution = Split.split(instance, tour);
+		if (solution != null) return solution;
+		solution = new Solution(instance);
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		boolean [] visitedSets = new boolean[instance.getNumberOfSets()+1];
+		Iterator<Route> routeIter = solution.iterator();
+		Route currentRoute = routeIter.next();
+		for (Customer c : tour) {
+			if (!currentRoute.addCustomer(c, dmatrix)) {
+				if (!routeIter.hasNext()) break; /* No more routes */
+				currentRoute = routeIter.next();
+				currentRoute.addCustomer(c, dmatrix);
+			}
+			visitedSets[c.getSet().getId()] = true;
+		}
+		InsertionHeuristics.fixSolution(visitedSets, solution);
+		if (!solution.isValid(false)) return null;
+		return solution;
+	}
+
+	/**
+	 * Ordered crossover (OX) at set level. A random segment of the first
+	 * parent is kept and the remaining sets are filled in the order
+	 * they appear in the second parent, starting after the segment.
+	 * Each set keeps the customer chosen by the parent it was taken from.
+	 */
+	ArrayList<Customer> crossover(Individual first, Individual second) {
+		ArrayList<Customer> firstTour = Split.giantTour(first.solution);
+		ArrayList<Customer> secondTour = Split.giantTour(second.solution);
+		int n = firstTour.size();
+		int start = random.nextInt(n);
+		int end = random.nextInt(n);
+		while (end == start && n > 1) end = random.nextInt(n);
+
+		Customer [] child = new Customer[n];
+		boolean [] inChild = new boolean[n+1]; /* Indexed by set id */
+		int position = start;
+		while (true) {
+			Customer c = firstTour.get(position);
+			child[position] = c;
+			inChild[c.getSet().getId()] = true;
+			if (position == end) break;
+			position = (position + 1) % n;
+		}
+
+		int childPosition = (end + 1) % n;
+		for (int i = 1; i <= n; i++) {
+			Customer c = secondTour.get((end + i) % n);
+			if (inChild[c.getSet().getId()]) continue;
+			child[childPosition] = c;
+			childPosition = (childPosition + 1) % n;
+		}
+
+		ArrayList<Customer> tour = new ArrayList<>(n);
+		for (Customer c : child) tour.add(c);
+		return tour;
+	}
+
+	/**
+	 * Picks the fitter of two random individuals, reading the biased fitness
+	 * computed after the last population change
+	 */
+	Individual binaryTournament() {
+		Individual first = population.get(random.nextInt(population.size()));
+		Individual second = population.get(random.nextInt(population.size()));
+		return first.biasedFitness < second.biasedFitness ? first : second;
+	}
+
+	void addIndividual(Individual individual) {
+		for (Individual other : population) {
+			double distance = individual.distanceTo(other);
+			individual.distances.put(other, distance);
+			other.distances.put(individual, distance);
+		}
+		population.add(individual);
+	}
+
+	void removeIndividual(Individual individual) {
+		population.remove(individual);
+		for (Individual other : population)
+			other.distances.remove(individual);
+	}
+
+	/**
+	 * Ranks individuals by cost and by diversity contribution, both normalised
+	 * between 0 (best) and 1 (worst), and combines them into the biased fitness.
+	 * The lower the biased fitness, the better the individual.
+	 */
+	void updateBiasedFitness() {
+		int size = population.size();
+		if (size == 1) {
+			population.get(0).biasedFitness = 0;
+			return;
+		}
+		ArrayList<Individual> byCost = new ArrayList<>(population);
+		byCost.sort((i1, i2) -> Integer.compare(i1.cost, i2.cost));
+		for (Individual individual : population)
+			individual.updateAverageDistanceToClosest(numOfClosest);
+		ArrayList<Individual> byDiversity = new ArrayList<>(population);
+		byDiversity.sort((i1, i2) -> Double.compare(
+				i2.averageDistanceToClosest, i1.averageDistanceToClosest));
+		double diversityWeight = 1.0 - Math.min((double) numOfElite / size, 1.0);
+		for (int rank = 0; rank < size; rank++)
+			byCost.get(rank).biasedFitness = (double) rank / (size - 1);
+		for (int rank = 0; rank < size; rank++)
+			byDiversity.get(rank).biasedFitness += diversityWeight * rank / (size - 1);
+	}
+
+	/**
+	 * Removes individuals until the population is back to its minimum size,
+	 * starting with clones and then the ones with worst biased fitness,
+	 * which is recomputed after each removal
+	 */
+	void selectSurvivors() {
+		while (population.size() > minPopulationSize) {
+			Individual worst = null;
+			boolean worstIsClone = false;
+			for (Individual individual : population) {
+				boolean isClone = individual.isClone();
+				if (worst == null || (isClone && !worstIsClone) ||
+						(isClone == worstIsClone && individual.biasedFitness > worst.biasedFitness)) {
+					worst = individual;
+					worstIsClone = isClone;
+				}
+			}
+			removeIndividual(worst);
+			updateBiasedFitness();
+		}
+	}
+
+}
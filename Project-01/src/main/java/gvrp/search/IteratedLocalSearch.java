@@ -3,14 +3,161 @@ package gvrp.search;
 import java.util.function.Predicate;
 
 import gvrp.Solution;
+import gvrp.acceptance.AcceptanceCriterion;
+import gvrp.acceptance.RandomWalk;
 
 public class IteratedLocalSearch {
 
 	private long seed;
+	private double targetFeasibleFraction = -1;
+	private int maxSegmentLength = 3;
+	private int maxEjections = 2;
+	private AcceptanceCriterion acceptance = new RandomWalk();
+	private AdaptiveOperatorSelection operatorSelection = null;
+	private double minPerturbation = -1;
+	private double maxPerturbation = -1;
+	private boolean pathRelinking = false;
+	private VisitedSolutions visitedSolutions = null;
+	private double granularity = 0;
+	private boolean setNeighbourhoods = false;
+	private boolean validation = false;
+	private int recombinationPeriod = 0;
+	private RoutePool routePool = null;
+	
+	/* Routes kept for recombination and branch-and-bound nodes per recombination */
+	public static final int ROUTE_POOL_SIZE = 10000;
+	public static final long RECOMBINATION_NODES = 100000;
+	private PathRelinking relinking = null;
+	
 	public IteratedLocalSearch(long seed) {
 		this.seed = seed;
 	}
 	
+	/**
+	 * Lets routes exceed the maximum capacity during the search, for a cost
+	 * that adapts to keep a target fraction of capacity-feasible local minima.
+	 * Promising infeasible local minima are repaired before being compared
+	 * with the best solution.
+	 * @param targetFeasibleFraction - target fraction of feasible local minima
+	 * @see CapacityPenalty
+	 */
+	public void enablePenalisedSearch(double targetFeasibleFraction) {
+		this.targetFeasibleFraction = targetFeasibleFraction;
+	}
+	
+	/**
+	 * @param length - longest segment moved by CROSS-exchanges
+	 * @see LocalSearch#setMaximumSegmentLength(int)
+	 */
+	public void setMaximumSegmentLength(int length) {
+		this.maxSegmentLength = length;
+	}
+	
+	/**
+	 * @param depth - maximum number of customers ejected by an ejection chain
+	 * @see LocalSearch#setMaximumEjections(int)
+	 */
+	public void setMaximumEjections(int depth) {
+		this.maxEjections = depth;
+	}
+	
+	/**
+	 * @param acceptance - decides whether each local minimum becomes
+	 * the current solution (a random walk by default)
+	 */
+	public void setAcceptanceCriterion(AcceptanceCriterion acceptance) {
+		this.acceptance = acceptance;
+	}
+	
+	/**
+	 * @param operatorSelection - weights of neighbourhood levels
+	 * @see LocalSearch#setAdaptiveOperatorSelection(AdaptiveOperatorSelection)
+	 */
+	public void setAdaptiveOperatorSelection(AdaptiveOperatorSelection operatorSelection) {
+		this.operatorSelection = operatorSelection;
+	}
+	
+	/**
+	 * Lets the number of perturbations adapt to the progress of the search,
+	 * starting from the fraction given to {@link #explore}
+	 * @param minFraction - lower bound, as a fraction of the number of customers
+	 * @param maxFraction - upper bound, as a fraction of the number of customers
+	 * @see PerturbationStrength
+	 */
+	public void enableAdaptivePerturbation(double minFraction, double maxFraction) {
+		this.minPerturbation = minFraction;
+		this.maxPerturbation = maxFraction;
+	}
+	
+	/**
+	 * @param visitedSolutions - recent local minima, where local searches stop early
+	 * @see LocalSearch#setVisitedSolutions(VisitedSolutions)
+	 */
+	public void setVisitedSolutions(VisitedSolutions visitedSolutions) {
+		this.visitedSolutions = visitedSolutions;
+	}
+	
+	/**
+	 * @param granularity - maximum distance between the sets of customers
+	 * paired by local searches, relative to the average edge cost
+	 * @see LocalSearch#setGranularity(double)
+	 */
+	public void setGranularity(double granularity) {
+		this.granularity = granularity;
+	}
+	
+	/**
+	 * @param setNeighbourhoods - whether local searches pair customers
+	 * with the customers in route of the closest sets
+	 * @see LocalSearch#setSetNeighbourhoods(boolean)
+	 */
+	public void setSetNeighbourhoods(boolean setNeighbourhoods) {
+		this.setNeighbourhoods = setNeighbourhoods;
+	}
+	
+	/**
+	 * Checks the current solution after every local search, which is
+	 * meant for debugging the moves
+	 * @see Solution#isValid(boolean, boolean)
+	 */
+	public void enableValidation() {
+		this.validation = true;
+	}
+	
+	/**
+	 * Keeps the capacity-feasible routes of local minima in a pool, and
+	 * periodically recombines them into a new solution, which replaces
+	 * the best solution if it is cheaper
+	 * @param period - number of iterations between recombinations
+	 * @see RoutePool
+	 */
+	public void enableRecombination(int period) {
+		this.recombinationPeriod = period;
+	}
+	
+	/**
+	 * @return route pool of the last exploration, or {@code null} if disabled
+	 */
+	public RoutePool getRoutePool() {
+		return routePool;
+	}
+	
+	/**
+	 * Relinks elite local minima on a background thread, whose best
+	 * solutions are picked up by the search
+	 * @see PathRelinking
+	 */
+	public void enablePathRelinking() {
+		this.pathRelinking = true;
+	}
+	
+	/**
+	 * @return path relinking of the last exploration, or {@code null} if disabled
+	 */
+	public PathRelinking getPathRelinking() {
+		return relinking;
+	}
+	
 	public Solution explore(Solution solution, double pertubation, Predicate<Solution> stoppingCriterion) {
 		
 		/* S0 ← InitialSolution;
@@ -28,25 +175,151 @@ public class IteratedLocalSearch {
 		 */
 		
 		LocalSearch ls = new LocalSearch(seed);
+		ls.setMaximumSegmentLength(maxSegmentLength);
+		ls.setMaximumEjections(maxEjections);
+		ls.setAdaptiveOperatorSelection(operatorSelection);
+		ls.setVisitedSolutions(visitedSolutions);
+		ls.setGranularity(granularity);
+		ls.setSetNeighbourhoods(setNeighbourhoods);
 		int n = solution.getInstance().getNumberOfCustomers();
-		int perturbationSize = Math.max((int) (n * pertubation), 1);
+		PerturbationStrength strength = minPerturbation < 0 ?
+				new PerturbationStrength(n, pertubation, pertubation, pertubation) :
+				new PerturbationStrength(n, pertubation, minPerturbation, maxPerturbation);
 		
 		ls.findLocalMinimum(solution); /* First Local Search */
 		Solution bestSolution = new Solution(solution); /* Best solution */
 		int bestCost = bestSolution.getCost();
 		int currCost = bestCost;
-				
-		while (stoppingCriterion.test(solution)) { /* Stopping Criterion */
-			ls.perturbSolution(solution, perturbationSize); /* Perturbation */
-			ls.findLocalMinimum(solution); /* Local Search */
-			currCost = solution.getCost();
-			if (bestCost > currCost) {
-				bestSolution = new Solution(solution); /* save best solution */
-				bestCost = currCost;
+		
+		CapacityPenalty capacityPenalty = null;
+		if (targetFeasibleFraction >= 0) {
+			capacityPenalty = new CapacityPenalty(solution.getInstance(), targetFeasibleFraction);
+			solution.setCapacityPenalty(capacityPenalty.getPenalty());
+		}
+		
+		/* Copy of the current solution, unless every local minimum is accepted */
+		boolean acceptsEverything = acceptance.acceptsEverything();
+		Solution acceptedSolution = acceptsEverything ? null : new Solution(solution);
+		double acceptedCost = solution.getPenalisedCost();
+		acceptance.initialise(acceptedCost);
+		/* Lowest penalised cost of the local minima, feasible or not, so that
+		 * criteria compare candidates with a record on the same basis */
+		double recordCost = acceptedCost;
+		
+		routePool = null;
+		if (recombinationPeriod > 0) {
+			routePool = new RoutePool(solution.getInstance(), ROUTE_POOL_SIZE);
+			routePool.addAll(solution);
+		}
+		long iteration = 0;
+		
+		relinking = null;
+		if (pathRelinking) {
+			LocalSearch relinkingLs = new LocalSearch(seed + 1);
+			relinkingLs.setMaximumSegmentLength(maxSegmentLength);
+			relinkingLs.setMaximumEjections(maxEjections);
+			relinkingLs.setAdaptiveOperatorSelection(operatorSelection);
+			relinkingLs.setVisitedSolutions(visitedSolutions);
+			relinkingLs.setGranularity(granularity);
+			relinkingLs.setSetNeighbourhoods(setNeighbourhoods);
+			relinking = new PathRelinking(relinkingLs, seed + 1);
+			offerElite(bestSolution);
+			relinking.start();
+		}
+		
+		try {
+			/* Infeasible solutions are never reported */
+			while (stoppingCriterion.test(solution.isFeasible() ? solution : bestSolution)) { /* Stopping Criterion */
+				++iteration;
+				ls.perturbSolution(solution, strength.getSize()); /* Perturbation */
+				ls.findLocalMinimum(solution); /* Local Search */
+				if (validation && !solution.isValid(true, capacityPenalty == null))
+					throw new IllegalStateException("Invalid solution after iteration " + iteration);
+				strength.register(solution.getPenalisedCost());
+				currCost = solution.getCost();
+				boolean feasible = true;
+				if (capacityPenalty != null) {
+					feasible = solution.isFeasible();
+					if (!feasible && bestCost > currCost) {
+						/* Repair phase */
+						Solution repairedSolution = new Solution(solution);
+						if (ls.repair(repairedSolution, capacityPenalty.getPenalty()) &&
+								bestCost > repairedSolution.getCost()) {
+							bestSolution = repairedSolution;
+							bestCost = repairedSolution.getCost();
+						}
+					}
+					if (capacityPenalty.register(feasible)) {
+						solution.setCapacityPenalty(capacityPenalty.getPenalty());
+						if (!acceptsEverything) {
+							/* Costs penalised with the previous weight are stale */
+							acceptedSolution.setCapacityPenalty(capacityPenalty.getPenalty());
+							acceptedCost = acceptedSolution.getPenalisedCost();
+							recordCost = Math.min(bestCost, acceptedCost);
+						}
+					}
+				}
+				if (feasible && bestCost > currCost) {
+					bestSolution = new Solution(solution); /* save best solution */
+					bestCost = currCost;
+				}
+				Solution improved = null;
+				if (routePool != null) {
+					routePool.addAll(solution);
+					if (iteration % recombinationPeriod == 0) {
+						improved = routePool.recombine(bestCost, RECOMBINATION_NODES);
+						if (improved != null) ls.findLocalMinimum(improved);
+					}
+				}
+				if (relinking != null) {
+					if (feasible) offerElite(solution);
+					Solution relinked = relinking.getImprovement(improved == null ? bestCost : improved.getCost());
+					if (relinked != null) improved = relinked; /* Already a private copy */
+				}
+				if (improved != null) {
+					/* Continues from the improved solution */
+					improved.setCapacityPenalty(-1);
+					bestSolution = new Solution(improved);
+					bestCost = bestSolution.getCost();
+					solution = improved;
+					if (capacityPenalty != null)
+						solution.setCapacityPenalty(capacityPenalty.getPenalty());
+					if (!acceptsEverything) {
+						acceptedSolution = new Solution(solution);
+						acceptedCost = solution.getPenalisedCost();
+					}
+					continue;
+				}
+				if (acceptsEverything) continue;
+				/* Acceptance criterion */
+				double candidateCost = solution.getPenalisedCost();
+				recordCost = Math.min(recordCost, Math.min(candidateCost, bestCost));
+				if (acceptance.accept(candidateCost, acceptedCost, recordCost)) {
+					acceptedSolution = new Solution(solution);
+					acceptedCost = candidateCost;
+				} else {
+					solution = new Solution(acceptedSolution);
+					if (capacityPenalty != null)
+						solution.setCapacityPenalty(capacityPenalty.getPenalty());
+				}
 			}
+		} finally {
+			if (relinking != null) relinking.stop();
 		}
 		
+		bestSolution.setCapacityPenalty(-1);
 		return bestSolution;
 	}
 	
+	/**
+	 * Offers a copy of a capacity-feasible local minimum to path relinking,
+	 * if it is good enough to be an elite solution
+	 */
+	private void offerElite(Solution solution) {
+		if (!relinking.isElite(solution.getCost())) return;
+		Solution elite = new Solution(solution);
+		elite.setCapacityPenalty(-1);
+		relinking.offer(elite);
+	}
+	
 }
@@ -1,26 +1,177 @@
 package gvrp.search;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import gvrp.Customer;
+import gvrp.CustomerSet;
 import gvrp.DistanceMatrix;
 import gvrp.GammaSet;
 import gvrp.Instance;
+import gvrp.Point;
 import gvrp.Route;
 import gvrp.Solution;
 
 public class LocalSearch {
 
-	Random random = new Random();
+	/* Not shared among threads, as every local search has its own */
+	SplittableRandom random;
+	
+	/* Permutations of customer and neighbour indices, shuffled in place */
+	int [] iOrder = new int[0];
+	int [] jOrder = new int[0];
 	
 	/* Attempt to make a move with two customers and 
 	 * returns whether it was successful or not */
-	int numOfNeighbourhoodLevels = 4;
+	int numOfGranularLevels = 4;
+	
+	/* Moves between pairs of routes, explored
+	 * after the granular neighbourhoods */
+	static final int SWAP_STAR_LEVEL = 4;
+	static final int EJECTION_CHAIN_LEVEL = 5;
+	
+	/* Changes of the customer visited in a set, explored first,
+	 * as they are the cheapest moves to evaluate */
+	static final int REPRESENTATIVE_LEVEL = 6;
+	
+	/* Names of the neighbourhood levels and the order
+	 * in which they are explored by default */
+	public static final String [] LEVEL_LABELS = {
+		"shift", "swap", "2-opt", "shift2/CROSS", "SWAP*", "ejection chain", "representative"
+	};
+	static final int [] DEFAULT_ORDER = {6, 0, 1, 2, 3, 4, 5};
+	
+	/* Longest segment moved by CROSS-exchanges */
+	int maxSegmentLength = 3;
+	
+	EjectionChain ejectionChain = new EjectionChain(2);
+	
+	/* Learns the order of neighbourhood levels, if not null */
+	AdaptiveOperatorSelection operatorSelection = null;
+	
+	/* Draws the orders sampled from the shared weights, split from
+	 * the search's own stream so that every search is reproducible */
+	SplittableRandom orderRandom = null;
+	
+	/* Recent local minima, where the search stops early, if not null */
+	VisitedSolutions visitedSolutions = null;
+	
+	/* Pairs of customers whose sets are farther apart than this
+	 * fraction of the average edge cost are skipped, if positive */
+	double granularity = 0;
+	
+	/* Neighbours are the routed customers of the closest sets,
+	 * instead of the closest customers */
+	boolean setNeighbourhoods = false;
 	
 	public LocalSearch(long seed) {
-		random.setSeed(seed);
+		random = new SplittableRandom(seed);
+	}
+	
+	/**
+	 * @param length - longest segment moved by CROSS-exchanges
+	 * (1 disables them, as single customers are already shifted and swapped)
+	 */
+	public void setMaximumSegmentLength(int length) {
+		this.maxSegmentLength = length;
+	}
+	
+	/**
+	 * @param depth - maximum number of customers ejected by an ejection chain
+	 * (0 disables them)
+	 */
+	public void setMaximumEjections(int depth) {
+		this.ejectionChain = new EjectionChain(depth);
+	}
+	
+	/**
+	 * Lets the order of neighbourhood levels adapt to how much each one
+	 * improves solutions per CPU time (in local minimum searches only,
+	 * not in perturbations)
+	 * @param operatorSelection - weights of neighbourhood levels (may be
+	 * shared among local searches) or {@code null} for the default order
+	 */
+	public void setAdaptiveOperatorSelection(AdaptiveOperatorSelection operatorSelection) {
+		this.operatorSelection = operatorSelection;
+		this.orderRandom = operatorSelection == null ? null : random.split();
+	}
+	
+	/**
+	 * Stops the search as soon as it reaches a recent local minimum,
+	 * and remembers every local minimum found
+	 * @param visitedSolutions - recent local minima (may be shared among
+	 * local searches) or {@code null} for always running the full search
+	 */
+	public void setVisitedSolutions(VisitedSolutions visitedSolutions) {
+		this.visitedSolutions = visitedSolutions;
+	}
+	
+	/**
+	 * Skips pairs of customers whose sets are too far apart to be
+	 * part of a good solution, before any move is evaluated
+	 * @param granularity - maximum distance between the sets of a pair,
+	 * as a multiple of the average edge cost of the current solution
+	 * (0 disables it)
+	 * @see Instance#getSetDistance
+	 */
+	public void setGranularity(double granularity) {
+		this.granularity = granularity;
+	}
+	
+	/**
+	 * @param setNeighbourhoods - whether the neighbours of a customer are the
+	 * customers in route of the closest sets to its set, instead of its
+	 * closest customers, which may be out of route or in the same set
+	 * @see GammaSet#getClosestSets(CustomerSet)
+	 */
+	public void setSetNeighbourhoods(boolean setNeighbourhoods) {
+		this.setNeighbourhoods = setNeighbourhoods;
+	}
+	
+	/**
+	 * @param solution - solution
+	 * @param gammaSubset - closest customers of a customer, or {@code null}
+	 * @param closestSets - closest sets of its set, or {@code null}
+	 * @param j - index of the neighbour
+	 * @return the j-th neighbour, if it is in a route, or {@code null}
+	 */
+	Customer getNeighbour(Solution solution, ArrayList<Customer> gammaSubset,
+			ArrayList<CustomerSet> closestSets, int j) {
+		if (closestSets != null)
+			return solution.getRoutedCustomer(closestSets.get(j));
+		Customer cj = gammaSubset.get(j);
+		return solution.isCustomerInRoute(cj) ? cj : null;
+	}
+	
+	/**
+	 * Makes the customer and neighbour permutations as long as
+	 * the number of customers and neighbours of an instance
+	 * @param instance - instance
+	 */
+	void prepareOrders(Instance instance) {
+		int numOfCustomers = instance.getNumberOfCustomers();
+		int jSize = Math.min(instance.getGammaK(), instance.getNumberOfSets()-1);
+		if (iOrder.length != numOfCustomers) {
+			iOrder = new int[numOfCustomers];
+			for (int i = 0; i < numOfCustomers; ++i) iOrder[i] = i;
+		}
+		if (jOrder.length != jSize) {
+			jOrder = new int[jSize];
+			for (int j = 0; j < jSize; ++j) jOrder[j] = j;
+		}
+	}
+	
+	/**
+	 * Shuffles a permutation in place (Fisher-Yates)
+	 * @param order - permutation
+	 */
+	void shuffle(int [] order) {
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
 	}
 	
 	/**
@@ -29,142 +180,292 @@ public class LocalSearch {
 	public int findLocalMinimum(Solution solution) {
 		int numOfImprovements = 0;
 		Instance instance = solution.getInstance();
-		int numOfCustomers = instance.getNumberOfCustomers();
+		
+		/* Prepare some stuff beforehand */
+		prepareOrders(instance);
+		
+		int [] levels = operatorSelection == null ? DEFAULT_ORDER : operatorSelection.getOrder(orderRandom);
+		int position = 0;
+		
+		/* Start main loop */
+		while (position < levels.length) {
+			/* Known local minima can't be improved */
+			if (position == 0 && visitedSolutions != null && visitedSolutions.contains(solution))
+				break;
+			int level = levels[position];
+			int numOfLevelImprovements;
+			if (operatorSelection == null) {
+				numOfLevelImprovements = exploreLevel(level, solution);
+			} else {
+				double cost = solution.getPenalisedCost();
+				long cpuTime = AdaptiveOperatorSelection.getCpuTime();
+				numOfLevelImprovements = exploreLevel(level, solution);
+				cpuTime = AdaptiveOperatorSelection.getCpuTime() - cpuTime;
+				operatorSelection.register(level, cost - solution.getPenalisedCost(), cpuTime);
+			}
+			numOfImprovements += numOfLevelImprovements;
+			/* Goes back to the first level after any improvement */
+			position = numOfLevelImprovements > 0 ? 0 : position + 1;
+		}
+		if (visitedSolutions != null)
+			visitedSolutions.add(solution);
+		return numOfImprovements;
+	}
+	
+	/**
+	 * Explores a neighbourhood level once
+	 * @param level - neighbourhood level
+	 * @param solution - solution
+	 * @return number of improvements
+	 */
+	int exploreLevel(int level, Solution solution) {
+		Instance instance = solution.getInstance();
 		DistanceMatrix dmatrix = instance.getDistancematrix();
 		ArrayList<Customer> customers = instance.getCustomers();
 		GammaSet gamma = instance.getGammaSet();
 		
-		/* Prepare some stuff beforehand */
-		ArrayList<Integer> iOrder = new ArrayList<>(numOfCustomers);
-		for (int i = 0; i < numOfCustomers; ++i) iOrder.add(i);
-		int jSize = Math.min(instance.getGammaK(), instance.getNumberOfSets()-1);
-		ArrayList<Integer> jOrder = new ArrayList<>(jSize);
-		for (int i = 0; i < jSize; ++i) jOrder.add(i);
-		ArrayList<Customer> gammaSubset = null;
-		boolean improvedOnce = false;
-		int neighboorhoodLevel = 0;
+		if (level == SWAP_STAR_LEVEL)
+			return applySwapStar(solution, dmatrix);
 		
-		/* Start main loop */
-		while (neighboorhoodLevel < numOfNeighbourhoodLevels) {
-			
-			/* Shuffle i orders so not to leave a bias */
-			Collections.shuffle(iOrder, random);
-			Collections.shuffle(jOrder, random);
-			
-			improvedOnce = false;
-			for (Integer i : iOrder) {
-				Customer ci = customers.get(i);
-				if (!solution.isCustomerInRoute(ci)) continue;
-				/* Through all customers that are in route */
-				gammaSubset = gamma.getClosestNeighbours(ci);
-				/* Obtain the k nearest customers */
-				for (Integer j : jOrder) {
-					Customer cj = gammaSubset.get(j);
-					if (!solution.isCustomerInRoute(cj)) continue;
-					/* For each neighbouring customer that is also in a route */
-					boolean improved = false;
-					Route ri = solution.getCustomerRoute(ci), rj = solution.getCustomerRoute(cj);
-					Integer ciIndex = ri.indexOf(ci), cjIndex = rj.indexOf(cj);
-					/* Check whether they are in the same route or
-					 * not and explore the neighbourhood accordingly */
-					if (ri == rj) {
-						/* C[i] and C[j] are in the same route
-						 * --> Intra route neighbourhood
-						 */
-						switch (neighboorhoodLevel) {
-							case 0:
-								improved = ri.intraShift(ciIndex, cjIndex, dmatrix, true);
-								break;
-							case 1:
-								improved = ri.intraSwap(ciIndex, cjIndex, dmatrix, true);
-								break;
-							case 2:
-								improved = ri.intra2Opt(ciIndex, cjIndex, dmatrix, true);
-								break;
-							case 3:
-								for (int z = cjIndex + 1; z < ri.size(); z++)
-									improved = ri.intraShift2(ciIndex, cjIndex, z, dmatrix, true) || improved;
-								break;
-						}
-					} else {
-						/* C[i] and C[j] are in different routes
-						 * --> Inter route neighbourhood
-						 */
-						switch (neighboorhoodLevel) {
-							case 0:
-								improved = ri.interShift(rj, ciIndex, cjIndex, dmatrix, true);
-								break;
-							case 1:
-								improved = ri.interSwap(rj, ciIndex, cjIndex, dmatrix, true);
-								break;
-							case 2:
-								improved = ri.inter2OptStar(rj, ciIndex, cjIndex, dmatrix, true);
-								break;
-						}
-						if (improved) {
-							/* Route j has changed!
-							 */
-							rj.findShortestPath(dmatrix);
-						}
+		if (level == REPRESENTATIVE_LEVEL)
+			return applyRepresentativeChanges(solution, dmatrix);
+		
+		/* Shuffle i orders so not to leave a bias */
+		shuffle(iOrder);
+		
+		if (level == EJECTION_CHAIN_LEVEL)
+			return applyEjectionChains(solution, customers);
+		
+		shuffle(jOrder);
+		
+		/* Granular threshold, from the average edge cost
+		 * (one edge per set plus one per vehicle) */
+		double threshold = Double.POSITIVE_INFINITY;
+		if (granularity > 0)
+			threshold = granularity * solution.getCost() / (instance.getNumberOfSets() + instance.getFleet());
+		
+		int numOfImprovements = 0;
+		for (int i : iOrder) {
+			Customer ci = customers.get(i);
+			if (!solution.isCustomerInRoute(ci)) continue;
+			/* Through all customers that are in route */
+			ArrayList<Customer> gammaSubset = setNeighbourhoods ? null : gamma.getClosestNeighbours(ci);
+			ArrayList<CustomerSet> closestSets = setNeighbourhoods ? gamma.getClosestSets(ci.getSet()) : null;
+			/* Obtain the k nearest customers or sets */
+			for (int j : jOrder) {
+				Customer cj = getNeighbour(solution, gammaSubset, closestSets, j);
+				if (cj == null) continue;
+				/* For each neighbouring customer that is also in a route */
+				if (instance.getSetDistance(ci.getSet(), cj.getSet()) > threshold) continue;
+				/* Whose set is close enough */
+				boolean improved = false;
+				Route ri = solution.getCustomerRoute(ci), rj = solution.getCustomerRoute(cj);
+				int ciIndex = ri.getPosition(ci), cjIndex = rj.getPosition(cj);
+				/* Check whether they are in the same route or
+				 * not and explore the neighbourhood accordingly */
+				if (ri == rj) {
+					/* C[i] and C[j] are in the same route
+					 * --> Intra route neighbourhood
+					 */
+					switch (level) {
+						case 0:
+							improved = ri.intraShift(ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 1:
+							improved = ri.intraSwap(ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 2:
+							improved = ri.intra2Opt(ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 3:
+							for (int z = cjIndex + 1; z < ri.size(); z++)
+								improved = ri.intraShift2(ciIndex, cjIndex, z, dmatrix, true) || improved;
+							break;
+					}
+				} else {
+					/* C[i] and C[j] are in different routes
+					 * --> Inter route neighbourhood
+					 */
+					switch (level) {
+						case 0:
+							improved = ri.interShift(rj, ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 1:
+							improved = ri.interSwap(rj, ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 2:
+							improved = ri.inter2OptStar(rj, ciIndex, cjIndex, dmatrix, true);
+							break;
+						case 3:
+							improved = crossExchange(ri, rj, ciIndex, cjIndex + 1, dmatrix);
+							break;
 					}
 					if (improved) {
-						neighboorhoodLevel = 0; /* Goes back to ground level */
-						improvedOnce = true; /* Guarantee there was one improvement */
-						/* Route i has changed!
+						/* Route j has changed!
 						 */
-						ri.findShortestPath(dmatrix);
-						if (!solution.isCustomerInRoute(ci)) break;
-						++numOfImprovements;
-					}					
+						rj.findShortestPath(dmatrix);
+					}
+				}
+				if (improved) {
+					++numOfImprovements;
+					/* Route i has changed!
+					 */
+					ri.findShortestPath(dmatrix);
+					if (!solution.isCustomerInRoute(ci)) break;
 				}
 			}
-			if (!improvedOnce) {
-				/* Found no improvement in the 
-				 * current neighbourhood space */
-				++neighboorhoodLevel;
+		}
+		return numOfImprovements;
+	}
+	
+	/**
+	 * Tries CROSS-exchanges of every length combination, with and without
+	 * reversal, between a segment of route ri and a segment of route rj
+	 * @param ri - route
+	 * @param rj - another route
+	 * @param p - first position of the segment in route ri
+	 * @param q - first position of the segment in route rj
+	 * @param dmatrix - distance matrix
+	 * @return whether an improving move was applied
+	 */
+	boolean crossExchange(Route ri, Route rj, int p, int q, DistanceMatrix dmatrix) {
+		for (int pLength = 1; pLength <= maxSegmentLength; pLength++) {
+			for (int qLength = 0; qLength <= maxSegmentLength; qLength++) {
+				if (pLength == 1 && qLength <= 1) continue; /* Shifts and swaps */
+				for (int reversal = 0; reversal < 4; reversal++) {
+					boolean reverseP = (reversal & 1) != 0, reverseQ = (reversal & 2) != 0;
+					/* Reversing a single customer changes nothing */
+					if ((reverseP && pLength < 2) || (reverseQ && qLength < 2)) continue;
+					if (ri.interCrossExchange(rj, p, q, pLength, qLength, reverseP, reverseQ, dmatrix, true))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Applies improving SWAP* moves between pairs of routes
+	 * whose polar sectors overlap
+	 * @param solution - solution
+	 * @param dmatrix - distance matrix
+	 * @return number of improvements
+	 */
+	int applySwapStar(Solution solution, DistanceMatrix dmatrix) {
+		Point depot = solution.getInstance().getDepot();
+		int numOfRoutes = solution.size();
+		CircleSector [] sectors = new CircleSector[numOfRoutes];
+		for (int i = 0; i < numOfRoutes; i++)
+			sectors[i] = new CircleSector(solution.get(i), depot);
+		int numOfImprovements = 0;
+		for (int i = 0; i < numOfRoutes; i++) {
+			for (int j = i + 1; j < numOfRoutes; j++) {
+				if (!sectors[i].overlaps(sectors[j])) continue;
+				Route ri = solution.get(i), rj = solution.get(j);
+				if (ri.interSwapStar(rj, dmatrix, true)) {
+					/* Both routes have changed!
+					 */
+					ri.findShortestPath(dmatrix);
+					rj.findShortestPath(dmatrix);
+					sectors[i] = new CircleSector(ri, depot);
+					sectors[j] = new CircleSector(rj, depot);
+					++numOfImprovements;
+				}
 			}
 		}
 		return numOfImprovements;
 	}
 	
+	/**
+	 * Replaces the customer visited in each set by the best one given its
+	 * neighbours in the route, which fixes the routes left by perturbations
+	 * without finding their shortest paths
+	 * @param solution - solution
+	 * @param dmatrix - distance matrix
+	 * @return number of improvements
+	 * @see Route#improveRepresentatives(DistanceMatrix)
+	 */
+	int applyRepresentativeChanges(Solution solution, DistanceMatrix dmatrix) {
+		int numOfImprovements = 0;
+		for (Route route : solution)
+			numOfImprovements += route.improveRepresentatives(dmatrix);
+		return numOfImprovements;
+	}
+	
+	/**
+	 * Applies improving ejection chains beginning with each customer in route
+	 * @param solution - solution
+	 * @param customers - all customers
+	 * @return number of improvements
+	 */
+	int applyEjectionChains(Solution solution, ArrayList<Customer> customers) {
+		ejectionChain.load(solution);
+		int numOfImprovements = 0;
+		for (int i : iOrder)
+			if (ejectionChain.apply(customers.get(i))) ++numOfImprovements;
+		return numOfImprovements;
+	}
+	
+	/**
+	 * Tries to make a solution capacity-feasible by finding local minima
+	 * with increasingly higher capacity penalties. The original penalty
+	 * of the solution is restored afterwards.
+	 * @param solution - solution to be repaired
+	 * @param penalty - current penalty coefficient
+	 * @return whether the solution is capacity-feasible
+	 */
+	public boolean repair(Solution solution, double penalty) {
+		double originalPenalty = solution.get(0).getCapacityPenalty();
+		/* Local minima with the current penalty may not be ones with higher penalties */
+		VisitedSolutions originalVisitedSolutions = visitedSolutions;
+		visitedSolutions = null;
+		for (int attempt = 0; attempt < 2 && !solution.isFeasible(); attempt++) {
+			penalty *= 10;
+			solution.setCapacityPenalty(penalty);
+			findLocalMinimum(solution);
+		}
+		visitedSolutions = originalVisitedSolutions;
+		solution.setCapacityPenalty(originalPenalty);
+		return solution.isFeasible();
+	}
+	
 	public void perturbSolution(Solution solution, int numOfPertubations) {
 		Instance instance = solution.getInstance();
-		int numOfCustomers = instance.getNumberOfCustomers();
 		DistanceMatrix dmatrix = instance.getDistancematrix();
 		ArrayList<Customer> customers = instance.getCustomers();
 		GammaSet gamma = instance.getGammaSet();
 		
 		/* Prepare some stuff beforehand */
-		ArrayList<Integer> iOrder = new ArrayList<>(numOfCustomers);
-		for (int i = 0; i < numOfCustomers; ++i) iOrder.add(i);
-		int jSize = Math.min(instance.getGammaK(), instance.getNumberOfSets()-1);
-		ArrayList<Integer> jOrder = new ArrayList<>(jSize);
-		for (int i = 0; i < jSize; ++i) jOrder.add(i);
+		prepareOrders(instance);
 		ArrayList<Customer> gammaSubset = null;
+		ArrayList<CustomerSet> closestSets = null;
 		boolean perturbedOnce = false;
-		int neighboorhoodLevel = numOfNeighbourhoodLevels - 1;
+		/* Levels are cycled through, even with adaptive operator selection,
+		 * as perturbations don't have to improve the solution */
+		int neighboorhoodLevel = numOfGranularLevels - 1;
 		
 		/* Start main loop */
 		while (numOfPertubations > 0) {
 			
 			/* Shuffle i orders so not to leave a bias */
-			Collections.shuffle(iOrder, random);
-			Collections.shuffle(jOrder, random);
+			shuffle(iOrder);
+			shuffle(jOrder);
 			
 			perturbedOnce = false;
-			for (Integer i : iOrder) {
+			for (int i : iOrder) {
 				Customer ci = customers.get(i);
 				if (!solution.isCustomerInRoute(ci)) continue;
 				/* Through all customers that are in route */
-				gammaSubset = gamma.getClosestNeighbours(ci);
-				/* Obtain the k nearest customers */
-				for (Integer j : jOrder) {
-					Customer cj = gammaSubset.get(j);
-					if (!solution.isCustomerInRoute(cj)) continue;
+				gammaSubset = setNeighbourhoods ? null : gamma.getClosestNeighbours(ci);
+				closestSets = setNeighbourhoods ? gamma.getClosestSets(ci.getSet()) : null;
+				/* Obtain the k nearest customers or sets */
+				for (int j : jOrder) {
+					Customer cj = getNeighbour(solution, gammaSubset, closestSets, j);
+					if (cj == null) continue;
 					/* For each neighbouring customer that is also in a route */
 					boolean applied = false;
 					Route ri = solution.getCustomerRoute(ci), rj = solution.getCustomerRoute(cj);
-					Integer ciIndex = ri.indexOf(ci), cjIndex = rj.indexOf(cj);
+					int ciIndex = ri.getPosition(ci), cjIndex = rj.getPosition(cj);
 					/* Check whether they are in the same route or
 					 * not and explore the neighbourhood accordingly */
 					if (ri == rj) {
@@ -203,7 +504,7 @@ public class LocalSearch {
 						}
 					}
 					if (applied) {
-						neighboorhoodLevel = (neighboorhoodLevel + 1) % numOfNeighbourhoodLevels;
+						neighboorhoodLevel = (neighboorhoodLevel + 1) % numOfGranularLevels;
 						perturbedOnce = true; /* Guarantee there was one improvement */
 						if (!solution.isCustomerInRoute(ci)) break;
 						--numOfPertubations;
@@ -213,7 +514,7 @@ public class LocalSearch {
 			}
 			if (!perturbedOnce) {
 				/* Found no perturbation in the current neighbourhood space */
-				neighboorhoodLevel = (neighboorhoodLevel + 1) % numOfNeighbourhoodLevels;
+				neighboorhoodLevel = (neighboorhoodLevel + 1) % numOfGranularLevels;
 			}
 		}
 	}
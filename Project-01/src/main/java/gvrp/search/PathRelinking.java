@@ -0,0 +1,333 @@
+package gvrp.search;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import gvrp.Customer;
+import gvrp.CustomerSet;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.InstanceArrays;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Path relinking between elite solutions, on a background thread.
+ *
+ * <p>Elite solutions are offered by another search and kept in a small pool
+ * sorted by cost. The background thread walks from one elite solution
+ * towards another, moving one customer set at a time to the route it is
+ * assigned to in the guiding solution, where it takes the representative
+ * customer of the guiding solution. Routes of both solutions are matched
+ * by the number of sets they share. Each step applies the cheapest
+ * capacity-feasible move, and a few evenly spaced intermediate solutions are
+ * improved by the {@link LocalSearch}. The best solutions found along the way
+ * are offered back to the pool, from which the other search can pick them up.
+ *
+ * <p>Even reading a solution can update its cached route data, so pooled
+ * solutions are only accessed while holding the lock of the pool. Both
+ * threads work on private copies taken while holding it.
+ *
+ * <p>From the following paper:
+ * Ho S. C.; Gendreau M.;
+ * "Path relinking for the vehicle routing problem"
+ */
+public class PathRelinking {
+
+	/* Maximum number of elite solutions */
+	public static final int POOL_SIZE = 10;
+
+	/* Number of intermediate solutions improved by local search per path */
+	public static final int NUM_OF_LOCAL_SEARCHES = 4;
+
+	final LocalSearch ls;
+	final Random random;
+
+	/* Elite solutions, sorted by increasing cost, and
+	 * the ones that were not relinked yet */
+	final ArrayList<Solution> pool = new ArrayList<>(POOL_SIZE + 1);
+	final ArrayList<Solution> newcomers = new ArrayList<>();
+
+	Thread thread = null;
+	volatile boolean running = false;
+	long numOfPaths = 0;
+	long numOfImprovements = 0;
+
+	/**
+	 * @param ls - local search used on intermediate solutions,
+	 * which must not be used by other threads
+	 * @param seed - RNG seed used to pick elite solutions
+	 */
+	public PathRelinking(LocalSearch ls, long seed) {
+		this.ls = ls;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Starts relinking elite solutions on a background thread
+	 */
+	public synchronized void start() {
+		if (thread != null) return;
+		running = true;
+		thread = new Thread(this::run, "path-relinking");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the background thread, waiting for it to finish
+	 */
+	public void stop() {
+		Thread t;
+		synchronized (this) {
+			running = false;
+			t = thread;
+			thread = null;
+			notifyAll();
+		}
+		if (t == null) return;
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param cost - cost of a solution
+	 * @return whether a solution with that cost could enter the pool
+	 */
+	public synchronized boolean isElite(int cost) {
+		return pool.size() < POOL_SIZE || cost < pool.get(pool.size()-1).getCost();
+	}
+
+	/**
+	 * Adds a solution to the pool of elite solutions, if it is good enough
+	 * and not in the pool already. The solution must not be modified afterwards.
+	 * @param solution - capacity-feasible solution
+	 * @return whether the solution entered the pool
+	 */
+	public synchronized boolean offer(Solution solution) {
+		int cost = solution.getCost();
+		if (!isElite(cost)) return false;
+		int index = 0;
+		while (index < pool.size() && pool.get(index).getCost() < cost) ++index;
+		for (int i = index; i < pool.size() && pool.get(i).getCost() == cost; i++)
+			if (pool.get(i).equals(solution)) return false;
+		pool.add(index, solution);
+		newcomers.add(solution);
+		if (pool.size() > POOL_SIZE)
+			newcomers.remove(pool.remove(POOL_SIZE));
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * @param cost - cost of the best solution known by the caller
+	 * @return a copy of the best elite solution if it is cheaper,
+	 * or {@code null} otherwise
+	 */
+	public synchronized Solution getImprovement(int cost) {
+		if (pool.isEmpty() || pool.get(0).getCost() >= cost) return null;
+		return new Solution(pool.get(0));
+	}
+
+	/**
+	 * @return number of paths walked so far
+	 */
+	public synchronized long getNumberOfPaths() {
+		return numOfPaths;
+	}
+
+	/**
+	 * @return number of paths that led to a new best solution
+	 */
+	public synchronized long getNumberOfImprovements() {
+		return numOfImprovements;
+	}
+
+	/**
+	 * Relinks the newest elite solutions with random others, or random pairs
+	 * of elite solutions when there are no newcomers, until stopped
+	 */
+	private void run() {
+		while (running) {
+			Solution initial, guiding;
+			synchronized (this) {
+				Solution pooledInitial, pooledGuiding;
+				while (running && pool.size() < 2) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (!running) return;
+				if (newcomers.isEmpty()) {
+					pooledInitial = pool.get(random.nextInt(pool.size()));
+				} else {
+					pooledInitial = newcomers.remove(newcomers.size()-1);
+				}
+				do {
+					pooledGuiding = pool.get(random.nextInt(pool.size()));
+				} while (pooledGuiding == pooledInitial);
+				initial = new Solution(pooledInitial);
+				guiding = new Solution(pooledGuiding);
+			}
+			int bestCost = Math.min(initial.getCost(), guiding.getCost());
+			Solution best = relink(initial, guiding);
+			if (best == null) best = relink(guiding, initial);
+			synchronized (this) {
+				++numOfPaths;
+				if (best == null) continue;
+				if (best.getCost() < bestCost && best.getCost() < pool.get(0).getCost())
+					++numOfImprovements;
+				offer(best);
+			}
+		}
+	}
+
+	/**
+	 * Walks from a solution towards another
+	 * @param initial - initial solution (not modified, nor shared with other threads)
+	 * @param guiding - guiding solution (not modified, nor shared with other threads)
+	 * @return the best intermediate local minimum if it is better than
+	 * both solutions, or {@code null} otherwise
+	 */
+	Solution relink(Solution initial, Solution guiding) {
+		Instance instance = initial.getInstance();
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		InstanceArrays arrays = instance.getArrays();
+		int capacity = instance.getCapacity();
+		int numOfRoutes = initial.size();
+		Solution solution = new Solution(initial);
+
+		/* Matches the routes of both solutions, by decreasing number of shared sets */
+		int maxSetId = 0;
+		for (CustomerSet set : instance.getSets())
+			maxSetId = Math.max(maxSetId, set.getId());
+		int [] initialRouteOf = new int[maxSetId+1];
+		for (int r = 0; r < numOfRoutes; r++)
+			for (Customer c : solution.get(r))
+				initialRouteOf[c.getSet().getId()] = r;
+		int [][] overlap = new int[numOfRoutes][numOfRoutes];
+		for (int g = 0; g < numOfRoutes; g++)
+			for (Customer c : guiding.get(g))
+				++overlap[initialRouteOf[c.getSet().getId()]][g];
+		int [] matchOf = new int[numOfRoutes]; /* guiding route index to initial route index */
+		boolean [] matchedInitial = new boolean[numOfRoutes];
+		boolean [] matchedGuiding = new boolean[numOfRoutes];
+		for (int k = 0; k < numOfRoutes; k++) {
+			int bestR = -1, bestG = -1;
+			for (int r = 0; r < numOfRoutes; r++) {
+				if (matchedInitial[r]) continue;
+				for (int g = 0; g < numOfRoutes; g++) {
+					if (matchedGuiding[g]) continue;
+					if (bestR < 0 || overlap[r][g] > overlap[bestR][bestG]) {
+						bestR = r;
+						bestG = g;
+					}
+				}
+			}
+			matchedInitial[bestR] = matchedGuiding[bestG] = true;
+			matchOf[bestG] = bestR;
+		}
+
+		/* Sets in a different route in the guiding solution */
+		ArrayList<Customer> moves = new ArrayList<>();
+		ArrayList<Route> targets = new ArrayList<>();
+		for (int g = 0; g < numOfRoutes; g++) {
+			for (Customer c : guiding.get(g)) {
+				int r = matchOf[g];
+				if (initialRouteOf[c.getSet().getId()] == r) continue;
+				moves.add(c);
+				targets.add(solution.get(r));
+			}
+		}
+		if (moves.isEmpty()) return null;
+
+		int bestCost = Math.min(initial.getCost(), guiding.getCost());
+		Solution bestSolution = null;
+		int spacing = Math.max(moves.size() / (NUM_OF_LOCAL_SEARCHES + 1), 1);
+		int step = 0;
+		while (running && !moves.isEmpty()) {
+			/* Cheapest capacity-feasible move */
+			int bestMove = -1, bestIndex = 0, bestDelta = Integer.MAX_VALUE;
+			for (int m = 0; m < moves.size(); m++) {
+				Customer c = moves.get(m);
+				Customer current = solution.getRoutedCustomer(c.getSet());
+				Route from = solution.getCustomerRoute(current), to = targets.get(m);
+				if (from.size() == 1) continue; /* Routes can't be empty */
+				if (to.getCapacity() + arrays.getDemand(c.getId()) > capacity) continue;
+				int removalDelta = removalDelta(from, current, dmatrix);
+				int index = 0, insertionDelta = Integer.MAX_VALUE;
+				Customer previous = null;
+				int i = 0;
+				for (Customer next : to) {
+					int delta = distance(previous, c, dmatrix) + distance(c, next, dmatrix) - distance(previous, next, dmatrix);
+					if (delta < insertionDelta) {
+						insertionDelta = delta;
+						index = i;
+					}
+					previous = next;
+					++i;
+				}
+				int delta = distance(previous, c, dmatrix) + distance(c, null, dmatrix) - distance(previous, null, dmatrix);
+				if (delta < insertionDelta) {
+					insertionDelta = delta;
+					index = i;
+				}
+				if (removalDelta + insertionDelta < bestDelta) {
+					bestDelta = removalDelta + insertionDelta;
+					bestMove = m;
+					bestIndex = index;
+				}
+			}
+			if (bestMove < 0) break; /* Every remaining move is blocked */
+
+			/* Moves the set to the route of the guiding solution */
+			Customer c = moves.get(bestMove);
+			Customer current = solution.getRoutedCustomer(c.getSet());
+			Route from = solution.getCustomerRoute(current), to = targets.get(bestMove);
+			from.removeCustomer(current, dmatrix);
+			to.insertCustomer(bestIndex, c, dmatrix);
+			from.findShortestPath(dmatrix);
+			to.findShortestPath(dmatrix);
+			moves.set(bestMove, moves.get(moves.size()-1));
+			moves.remove(moves.size()-1);
+			targets.set(bestMove, targets.get(targets.size()-1));
+			targets.remove(targets.size()-1);
+
+			/* Intermediate solutions next to the guiding one are skipped */
+			if (++step % spacing != 0 || moves.size() < spacing) continue;
+			Solution intermediate = new Solution(solution);
+			ls.findLocalMinimum(intermediate);
+			int cost = intermediate.getCost();
+			if (cost < bestCost) {
+				bestSolution = intermediate;
+				bestCost = cost;
+			}
+		}
+		return bestSolution;
+	}
+
+	/**
+	 * Cost variation of removing a customer from its route
+	 */
+	private static int removalDelta(Route route, Customer c, DistanceMatrix dmatrix) {
+		int index = route.getPosition(c);
+		Customer previous = index > 0 ? route.get(index-1) : null;
+		Customer next = index < route.size()-1 ? route.get(index+1) : null;
+		return distance(previous, next, dmatrix) - distance(previous, c, dmatrix) - distance(c, next, dmatrix);
+	}
+
+	/**
+	 * Distance between two customers, where {@code null} stands for the depot
+	 */
+	private static int distance(Customer ci, Customer cj, DistanceMatrix dmatrix) {
+		if (ci == null) return cj == null ? 0 : dmatrix.getDistanceFromDepot(cj);
+		if (cj == null) return dmatrix.getDistanceFromDepot(ci);
+		return dmatrix.getDistanceBetween(ci, cj);
+	}
+
+}
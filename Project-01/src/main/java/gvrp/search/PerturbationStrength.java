@@ -0,0 +1,67 @@
+package gvrp.search;
+
+/**
+ * <p>Adaptive number of perturbations applied by each iteration of an
+ * iterated local search trajectory.
+ *
+ * <p>Whenever a local minimum improves the best cost of the trajectory, the
+ * strength decreases, so that the search intensifies around it. After
+ * {@link #STAGNATION} local minima in a row without improvement, the strength
+ * increases, so that the search escapes the current basin. The strength is
+ * always kept within the given bounds.
+ */
+public class PerturbationStrength {
+
+	/* Number of local minima without improvement before increasing the strength */
+	public static final int STAGNATION = 10;
+
+	/* Factors applied to the strength on stagnation and on improvement */
+	public static final double INCREASE = 1.25;
+	public static final double DECREASE = 0.8;
+
+	double strength;
+	int minSize;
+	int maxSize;
+	double bestCost = Double.POSITIVE_INFINITY;
+	int numOfNonImproving = 0;
+
+	/**
+	 * Bounds are given as fractions of the number of customers,
+	 * and are never below one perturbation
+	 * @param numOfCustomers - number of customers in the instance
+	 * @param initialFraction - initial strength
+	 * @param minFraction - lower bound of the strength
+	 * @param maxFraction - upper bound of the strength
+	 */
+	public PerturbationStrength(int numOfCustomers, double initialFraction, double minFraction, double maxFraction) {
+		minSize = Math.max((int) (numOfCustomers * minFraction), 1);
+		maxSize = Math.max((int) (numOfCustomers * maxFraction), minSize);
+		strength = Math.max(minSize, Math.min(maxSize, (int) (numOfCustomers * initialFraction)));
+	}
+
+	/**
+	 * @return the current number of perturbations
+	 */
+	public int getSize() {
+		return (int) Math.round(strength);
+	}
+
+	/**
+	 * Registers the cost of a local minimum of the trajectory
+	 * @param cost - cost of the local minimum
+	 * @return whether the number of perturbations has changed
+	 */
+	public boolean register(double cost) {
+		int previousSize = getSize();
+		if (cost < bestCost) {
+			bestCost = cost;
+			numOfNonImproving = 0;
+			strength = Math.max(minSize, Math.min(strength * DECREASE, strength - 1));
+		} else if (++numOfNonImproving >= STAGNATION) {
+			numOfNonImproving = 0;
+			strength = Math.min(maxSize, Math.max(strength * INCREASE, strength + 1));
+		}
+		return getSize() != previousSize;
+	}
+
+}
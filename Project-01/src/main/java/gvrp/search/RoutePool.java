@@ -0,0 +1,141 @@
+package gvrp.search;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gvrp.Customer;
+import gvrp.CustomerSet;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Pool of distinct capacity-feasible routes found by a search, which
+ * can be recombined into a new solution.
+ *
+ * <p>Routes are identified by their hash, which does not depend on their
+ * direction, and the oldest ones are forgotten when the pool is full.
+ * Recombination picks exactly one route per vehicle, so that every customer
+ * set is visited exactly once at minimum cost, by {@link SetPartitioning}.
+ *
+ * <p>From the following paper:
+ * Subramanian A.; Uchoa E.; Ochi L. S.;
+ * "A hybrid algorithm for a class of vehicle routing problems"
+ */
+public class RoutePool {
+
+	static class Column {
+		final Customer [] customers;
+		final int cost;
+
+		Column(Route route) {
+			this.customers = route.toArray(new Customer[route.size()]);
+			this.cost = route.getCost();
+		}
+	}
+
+	final Instance instance;
+	final int capacity;
+	final int [] rowOf; /* set id to row index */
+	final LinkedHashMap<Long, Column> columns;
+	long numOfNodes = 0;
+
+	/**
+	 * @param instance - instance
+	 * @param capacity - maximum number of routes in the pool
+	 */
+	public RoutePool(Instance instance, int capacity) {
+		this.instance = instance;
+		this.capacity = capacity;
+		int maxSetId = 0;
+		for (CustomerSet set : instance.getSets())
+			maxSetId = Math.max(maxSetId, set.getId());
+		rowOf = new int[maxSetId+1];
+		for (int row = 0; row < instance.getSets().size(); row++)
+			rowOf[instance.getSets().get(row).getId()] = row;
+		columns = new LinkedHashMap<Long, Column>(2 * capacity) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Column> eldest) {
+				return size() > RoutePool.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Adds a route to the pool, unless it is empty, exceeds the
+	 * maximum capacity or is in the pool already
+	 * @param route - route (not kept)
+	 * @return whether the route was added
+	 */
+	public boolean add(Route route) {
+		if (route.isEmpty() || route.getCapacity() > route.getMaximumCapacity()) return false;
+		Long hash = route.getHash();
+		if (columns.containsKey(hash)) return false;
+		columns.put(hash, new Column(route));
+		return true;
+	}
+
+	/**
+	 * Adds every route of a solution to the pool
+	 * @param solution - solution (not kept)
+	 */
+	public void addAll(Solution solution) {
+		for (Route route : solution)
+			add(route);
+	}
+
+	/**
+	 * @return number of routes in the pool
+	 */
+	public int size() {
+		return columns.size();
+	}
+
+	/**
+	 * @return number of branch-and-bound nodes explored by the last recombination
+	 */
+	public long getNumberOfNodes() {
+		return numOfNodes;
+	}
+
+	/**
+	 * Picks one route of the pool per vehicle, visiting every customer
+	 * set exactly once at minimum cost
+	 * @param upperBound - only solutions cheaper than this are searched for
+	 * @param maxNodes - maximum number of branch-and-bound nodes explored
+	 * @return the cheapest solution found, or {@code null} if none is
+	 * cheaper than the upper bound
+	 */
+	public Solution recombine(int upperBound, long maxNodes) {
+		int numOfRows = instance.getSets().size();
+		int numOfWords = (numOfRows + 63) >>> 6;
+		Column [] pool = columns.values().toArray(new Column[columns.size()]);
+		long [][] coverage = new long[pool.length][numOfWords];
+		int [] costs = new int[pool.length];
+		for (int c = 0; c < pool.length; c++) {
+			costs[c] = pool[c].cost;
+			for (Customer customer : pool[c].customers) {
+				int row = rowOf[customer.getSet().getId()];
+				coverage[c][row >>> 6] |= 1L << row;
+			}
+		}
+
+		SetPartitioning problem = new SetPartitioning(coverage, costs, numOfRows);
+		int [] chosen = problem.solve(instance.getFleet(), upperBound, maxNodes);
+		numOfNodes = problem.getNumberOfNodes();
+		if (chosen == null) return null;
+
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		Solution solution = new Solution(instance);
+		for (int r = 0; r < chosen.length; r++) {
+			Route route = solution.get(r);
+			route.addCustomers(Arrays.asList(pool[chosen[r]].customers), dmatrix);
+			route.findShortestPath(dmatrix);
+		}
+		return solution;
+	}
+
+}
@@ -0,0 +1,159 @@
+package gvrp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>Depth-first branch-and-bound for the set partitioning problem with a
+ * fixed number of columns: choose exactly k columns of minimum total cost
+ * that cover every row exactly once.
+ *
+ * <p>Each node branches on the uncovered row with the fewest columns, trying
+ * its columns that don't overlap the covered rows from the cheapest one. The
+ * cost of every column is split evenly among its rows, so that the cheapest
+ * share of each uncovered row adds up to a lower bound on the cost of
+ * covering them. The search stops after a given number of nodes, returning
+ * the best partition found so far.
+ */
+class SetPartitioning {
+
+	final long [][] columns;
+	final int [] costs;
+	final int numOfRows;
+	final int numOfWords;
+
+	/* Columns covering each row, from the cheapest one,
+	 * and rows by increasing number of columns */
+	int [][] columnsOfRow;
+	int [] rowOrder;
+
+	/* Sum of the cheapest shares of the rows of each column */
+	double [] columnBounds;
+	double [] rowShares;
+
+	long [] covered;
+	int [] chosen;
+	int [] bestChosen;
+	int bestCost;
+	long numOfNodes;
+	long maxNodes;
+
+	/**
+	 * @param columns - rows covered by each column, as bit sets
+	 * @param costs - cost of each column
+	 * @param numOfRows - number of rows, all of which must be covered
+	 */
+	SetPartitioning(long [][] columns, int [] costs, int numOfRows) {
+		this.columns = columns;
+		this.costs = costs;
+		this.numOfRows = numOfRows;
+		this.numOfWords = (numOfRows + 63) >>> 6;
+
+		ArrayList<ArrayList<Integer>> lists = new ArrayList<>(numOfRows);
+		for (int row = 0; row < numOfRows; row++)
+			lists.add(new ArrayList<>());
+		rowShares = new double[numOfRows];
+		Arrays.fill(rowShares, Double.POSITIVE_INFINITY);
+		for (int c = 0; c < columns.length; c++) {
+			int numOfColumnRows = 0;
+			for (long word : columns[c])
+				numOfColumnRows += Long.bitCount(word);
+			double share = (double) costs[c] / numOfColumnRows;
+			for (int row = 0; row < numOfRows; row++) {
+				if (!covers(columns[c], row)) continue;
+				lists.get(row).add(c);
+				rowShares[row] = Math.min(rowShares[row], share);
+			}
+		}
+		columnsOfRow = new int[numOfRows][];
+		for (int row = 0; row < numOfRows; row++) {
+			ArrayList<Integer> list = lists.get(row);
+			list.sort((a, b) -> Integer.compare(costs[a], costs[b]));
+			columnsOfRow[row] = list.stream().mapToInt(Integer::intValue).toArray();
+		}
+		rowOrder = new int[numOfRows];
+		for (int row = 0; row < numOfRows; row++)
+			rowOrder[row] = row;
+		rowOrder = Arrays.stream(rowOrder).boxed()
+				.sorted((a, b) -> Integer.compare(columnsOfRow[a].length, columnsOfRow[b].length))
+				.mapToInt(Integer::intValue).toArray();
+		columnBounds = new double[columns.length];
+		for (int c = 0; c < columns.length; c++)
+			for (int row = 0; row < numOfRows; row++)
+				if (covers(columns[c], row))
+					columnBounds[c] += rowShares[row];
+	}
+
+	private static boolean covers(long [] column, int row) {
+		return (column[row >>> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 * @param k - number of columns
+	 * @param upperBound - only partitions cheaper than this are searched for
+	 * @param maxNodes - maximum number of nodes explored
+	 * @return indices of the chosen columns, or {@code null} if no partition
+	 * cheaper than the upper bound was found
+	 */
+	int [] solve(int k, int upperBound, long maxNodes) {
+		double lowerBound = 0;
+		for (double share : rowShares) {
+			if (share == Double.POSITIVE_INFINITY) return null; /* Row can't be covered */
+			lowerBound += share;
+		}
+		this.maxNodes = maxNodes;
+		numOfNodes = 0;
+		covered = new long[numOfWords];
+		chosen = new int[k];
+		bestChosen = null;
+		bestCost = upperBound;
+		search(0, 0, numOfRows, 0, lowerBound);
+		return bestChosen;
+	}
+
+	/**
+	 * @return number of nodes explored by the last search
+	 */
+	long getNumberOfNodes() {
+		return numOfNodes;
+	}
+
+	private void search(int numOfChosen, int cost, int numOfUncovered, int firstRow, double lowerBound) {
+		if (numOfUncovered == 0) {
+			if (numOfChosen == chosen.length && cost < bestCost) {
+				bestCost = cost;
+				bestChosen = chosen.clone();
+			}
+			return;
+		}
+		/* Every column left must cover at least one row */
+		int numOfColumnsLeft = chosen.length - numOfChosen;
+		if (numOfColumnsLeft == 0 || numOfUncovered < numOfColumnsLeft) return;
+		if (cost + lowerBound >= bestCost - 1E-9) return;
+		if (++numOfNodes > maxNodes) return;
+
+		/* Branches on the uncovered row with the fewest columns */
+		while (covers(covered, rowOrder[firstRow])) ++firstRow;
+		int row = rowOrder[firstRow];
+		for (int c : columnsOfRow[row]) {
+			if (cost + costs[c] + lowerBound - columnBounds[c] >= bestCost - 1E-9) continue;
+			long [] column = columns[c];
+			boolean overlaps = false;
+			for (int w = 0; w < numOfWords && !overlaps; w++)
+				overlaps = (covered[w] & column[w]) != 0;
+			if (overlaps) continue;
+			int numOfColumnRows = 0;
+			for (int w = 0; w < numOfWords; w++) {
+				covered[w] |= column[w];
+				numOfColumnRows += Long.bitCount(column[w]);
+			}
+			chosen[numOfChosen] = c;
+			search(numOfChosen + 1, cost + costs[c], numOfUncovered - numOfColumnRows,
+					firstRow + 1, lowerBound - columnBounds[c]);
+			for (int w = 0; w < numOfWords; w++)
+				covered[w] ^= column[w];
+			if (numOfNodes > maxNodes) return;
+		}
+	}
+
+}
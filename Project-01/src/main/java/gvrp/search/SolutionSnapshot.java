@@ -0,0 +1,103 @@
+package gvrp.search;
+
+import gvrp.Customer;
+import gvrp.DistanceMatrix;
+import gvrp.Instance;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * Array copy of the routes of a solution, with their loads and the
+ * position of every routed customer, so that moves spanning several
+ * routes can be evaluated in constant time. Routes must be reloaded
+ * after they are modified.
+ */
+class SolutionSnapshot {
+
+	Solution solution;
+	DistanceMatrix dmatrix;
+
+	/* routes[r][i] = i-th customer of the r-th route
+	 * routeOf[id] and positionOf[id] = where a routed customer is */
+	Customer [][] routes;
+	int [] loads;
+	int [] routeOf;
+	int [] positionOf;
+
+	/**
+	 * Copies all routes of a solution
+	 * @param solution - solution
+	 */
+	SolutionSnapshot(Solution solution) {
+		this.solution = solution;
+		Instance instance = solution.getInstance();
+		this.dmatrix = instance.getDistancematrix();
+		int maxId = 0;
+		for (Customer c : instance.getCustomers())
+			maxId = Math.max(maxId, c.getId());
+		routeOf = new int[maxId+1];
+		positionOf = new int[maxId+1];
+		int numOfRoutes = solution.size();
+		routes = new Customer[numOfRoutes][];
+		loads = new int[numOfRoutes];
+		for (int r = 0; r < numOfRoutes; r++)
+			reload(r);
+	}
+
+	/**
+	 * Copies a route again, after it has been modified
+	 * @param r - index of the route in the solution
+	 */
+	void reload(int r) {
+		Route route = solution.get(r);
+		routes[r] = route.toArray(new Customer[route.size()]);
+		loads[r] = route.getCapacity();
+		for (int i = 0; i < routes[r].length; i++) {
+			routeOf[routes[r][i].getId()] = r;
+			positionOf[routes[r][i].getId()] = i;
+		}
+	}
+
+	/**
+	 * @return the customer in a position of a route, where
+	 * {@code null} stands for the depot on either end
+	 */
+	Customer at(int r, int i) {
+		Customer [] route = routes[r];
+		return i < 0 || i >= route.length ? null : route[i];
+	}
+
+	/**
+	 * Distance between two customers, where {@code null} stands for the depot
+	 */
+	int distance(Customer ci, Customer cj) {
+		if (ci == null) return cj == null ? 0 : dmatrix.getDistanceFromDepot(cj);
+		if (cj == null) return dmatrix.getDistanceFromDepot(ci);
+		return dmatrix.getDistanceBetween(ci, cj);
+	}
+
+	/**
+	 * Cost variation of removing the customer in position p of a route
+	 */
+	int removalDelta(int r, int p) {
+		Customer c = routes[r][p];
+		return distance(at(r, p-1), at(r, p+1)) - distance(at(r, p-1), c) - distance(c, at(r, p+1));
+	}
+
+	/**
+	 * Cost variation of inserting a customer before position i of a route
+	 */
+	int insertionDelta(int r, int i, Customer c) {
+		return distance(at(r, i-1), c) + distance(c, at(r, i)) - distance(at(r, i-1), at(r, i));
+	}
+
+	/**
+	 * Cost variation of replacing the customer in position p of a route
+	 */
+	int replacementDelta(int r, int p, Customer c) {
+		Customer old = routes[r][p];
+		return distance(at(r, p-1), c) + distance(c, at(r, p+1)) -
+				distance(at(r, p-1), old) - distance(old, at(r, p+1));
+	}
+
+}
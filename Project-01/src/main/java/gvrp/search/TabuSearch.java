@@ -0,0 +1,327 @@
+package gvrp.search;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+import gvrp.Customer;
+import gvrp.DistanceMatrix;
+import gvrp.GammaSet;
+import gvrp.Instance;
+import gvrp.InstanceArrays;
+import gvrp.Route;
+import gvrp.Solution;
+
+/**
+ * <p>Granular tabu search over inter-route relocations and swaps.
+ *
+ * <p>Every iteration applies the best admissible move that puts a customer
+ * next to one of its gamma neighbours, even if it makes the solution worse.
+ * When a customer leaves a route, the pair (customer set, route) becomes tabu
+ * for a random number of iterations within the tenure bounds, so customers of
+ * that set can't go back to that route. A tabu move is still admissible if
+ * it leads to a solution better than the best one found (aspiration).
+ *
+ * <p>Tabu attributes are kept in an {@link ExpiringHashTable}, whose entries
+ * expire on their own as iterations go by. New best solutions are polished
+ * with the {@link LocalSearch}, which also takes care of intra-route moves.
+ *
+ * <p>From the following paper:
+ * Toth P.; Vigo D.;
+ * "The granular tabu search and its application to the vehicle-routing problem"
+ */
+public class TabuSearch {
+
+	public static class Builder {
+
+		long seed = 0;
+		int minTenure = 5;
+		int maxTenure = 15;
+		int maxSegmentLength = 3;
+		int maxEjections = 2;
+		AdaptiveOperatorSelection operatorSelection = null;
+		double granularity = 0;
+		boolean setNeighbourhoods = false;
+
+		/**
+		 * Constructs the builder
+		 */
+		public Builder() {}
+
+		/**
+		 * @param seed - RNG seed
+		 * @return builder
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * @param tenure - minimum number of iterations an attribute stays tabu
+		 * (at least 1)
+		 * @return builder
+		 */
+		public Builder minTenure(int tenure) {
+			this.minTenure = tenure;
+			return this;
+		}
+
+		/**
+		 * @param tenure - maximum number of iterations an attribute stays tabu
+		 * (at least the minimum tenure)
+		 * @return builder
+		 */
+		public Builder maxTenure(int tenure) {
+			this.maxTenure = tenure;
+			return this;
+		}
+
+		/**
+		 * @param length - longest segment moved by CROSS-exchanges
+		 * when polishing new best solutions
+		 * @return builder
+		 */
+		public Builder maxSegmentLength(int length) {
+			this.maxSegmentLength = length;
+			return this;
+		}
+
+		/**
+		 * @param depth - maximum number of customers ejected by an
+		 * ejection chain when polishing new best solutions
+		 * @return builder
+		 */
+		public Builder maxEjections(int depth) {
+			this.maxEjections = depth;
+			return this;
+		}
+
+		/**
+		 * @param operatorSelection - weights of neighbourhood levels
+		 * learned by the local search (may be {@code null})
+		 * @return builder
+		 */
+		public Builder operatorSelection(AdaptiveOperatorSelection operatorSelection) {
+			this.operatorSelection = operatorSelection;
+			return this;
+		}
+
+		/**
+		 * @param granularity - maximum distance between the sets of
+		 * customers paired by the local search, relative to the average
+		 * edge cost (0 disables it)
+		 * @return builder
+		 */
+		public Builder granularity(double granularity) {
+			this.granularity = granularity;
+			return this;
+		}
+
+		/**
+		 * @param setNeighbourhoods - whether the local search pairs
+		 * customers with the customers in route of the closest sets
+		 * @return builder
+		 */
+		public Builder setNeighbourhoods(boolean setNeighbourhoods) {
+			this.setNeighbourhoods = setNeighbourhoods;
+			return this;
+		}
+
+		/**
+		 * @return tabu search
+		 * @throws IllegalArgumentException if the tenure bounds are inconsistent
+		 */
+		public TabuSearch build() throws IllegalArgumentException {
+			if (minTenure < 1 || maxTenure < minTenure)
+				throw new IllegalArgumentException("Tabu tenures must satisfy 1 <= minimum <= maximum (found "
+						+ minTenure + " and " + maxTenure + ")");
+			return new TabuSearch(this);
+		}
+
+	}
+
+	/* Kinds of move */
+	static final int RELOCATE = 0;
+	static final int SWAP = 1;
+
+	final long seed;
+	final int minTenure;
+	final int maxTenure;
+	final int maxSegmentLength;
+	final int maxEjections;
+	final AdaptiveOperatorSelection operatorSelection;
+	final double granularity;
+	final boolean setNeighbourhoods;
+
+	Random random;
+	ExpiringHashTable tabuList;
+	long iteration;
+	int numOfRoutes;
+
+	/* Best admissible move of the current iteration:
+	 * customer in route r and position p either moves to route t before
+	 * position q (relocation) or swaps with the customer in that position */
+	int moveKind, moveR, moveP, moveT, moveQ, moveDelta, numOfTies;
+
+	private TabuSearch(Builder builder) {
+		this.seed = builder.seed;
+		this.minTenure = builder.minTenure;
+		this.maxTenure = builder.maxTenure;
+		this.maxSegmentLength = builder.maxSegmentLength;
+		this.maxEjections = builder.maxEjections;
+		this.operatorSelection = builder.operatorSelection;
+		this.granularity = builder.granularity;
+		this.setNeighbourhoods = builder.setNeighbourhoods;
+	}
+
+	public Solution explore(Solution solution, Predicate<Solution> stoppingCriterion) {
+
+		/* S ← LocalSearch(S0);
+		 * repeat:
+		 * 		M ← best move in N(S) that is not tabu or leads to a new best;
+		 * 		S ← apply M to S;
+		 * 		make the reverse of M tabu;
+		 * 		if S is a new best then S* ← LocalSearch(S);
+		 * until stopping criterion is not satisfied anymore
+		 * return S*;
+		 */
+
+		Instance instance = solution.getInstance();
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		GammaSet gamma = instance.getGammaSet();
+		InstanceArrays arrays = instance.getArrays();
+		int capacity = instance.getCapacity();
+
+		random = new Random(seed);
+		numOfRoutes = solution.size();
+		tabuList = new ExpiringHashTable(maxTenure * 2);
+		iteration = 1;
+
+		LocalSearch ls = new LocalSearch(seed);
+		ls.setMaximumSegmentLength(maxSegmentLength);
+		ls.setMaximumEjections(maxEjections);
+		ls.setAdaptiveOperatorSelection(operatorSelection);
+		ls.setGranularity(granularity);
+		ls.setSetNeighbourhoods(setNeighbourhoods);
+		ls.findLocalMinimum(solution);
+		Solution bestSolution = new Solution(solution);
+		int bestCost = bestSolution.getCost();
+		int currCost = bestCost;
+		SolutionSnapshot snapshot = new SolutionSnapshot(solution);
+
+		while (stoppingCriterion.test(solution)) {
+			numOfTies = 0;
+			for (int r = 0; r < numOfRoutes; r++) {
+				Customer [] route = snapshot.routes[r];
+				for (int p = 0; p < route.length; p++) {
+					Customer ci = route[p];
+					int removalDelta = snapshot.removalDelta(r, p);
+					for (Customer cj : gamma.getClosestNeighbours(ci)) {
+						if (!solution.isCustomerInRoute(cj)) continue;
+						int t = snapshot.routeOf[cj.getId()];
+						if (t == r) continue;
+						int q = snapshot.positionOf[cj.getId()];
+						boolean tabu = isTabu(ci, t);
+						/* Relocations before and after the neighbour */
+						if (route.length > 1 && snapshot.loads[t] + arrays.getDemand(ci.getId()) <= capacity) {
+							for (int i = q; i <= q + 1; i++) {
+								int delta = removalDelta + snapshot.insertionDelta(t, i, ci);
+								consider(RELOCATE, r, p, t, i, delta, tabu, currCost, bestCost);
+							}
+						}
+						/* Swaps with the neighbour's predecessor and successor */
+						for (int k = q - 1; k <= q + 1; k += 2) {
+							Customer ck = snapshot.at(t, k);
+							if (ck == null) continue;
+							int demandGap = arrays.getDemand(ci.getId()) - arrays.getDemand(ck.getId());
+							if (snapshot.loads[r] - demandGap > capacity ||
+									snapshot.loads[t] + demandGap > capacity) continue;
+							int delta = snapshot.replacementDelta(r, p, ck) + snapshot.replacementDelta(t, k, ci);
+							consider(SWAP, r, p, t, k, delta, tabu || isTabu(ck, r), currCost, bestCost);
+						}
+					}
+				}
+			}
+
+			if (numOfTies == 0) {
+				/* Every move is tabu */
+				tabuList.clear();
+				++iteration;
+				continue;
+			}
+
+			/* Applies the move and makes its reverse tabu */
+			Route ri = solution.get(moveR), rj = solution.get(moveT);
+			Customer cp = snapshot.routes[moveR][moveP];
+			makeTabu(cp, moveR);
+			if (moveKind == RELOCATE) {
+				ri.removeCustomer(cp, dmatrix);
+				rj.insertCustomer(moveQ, cp, dmatrix);
+			} else {
+				makeTabu(snapshot.routes[moveT][moveQ], moveT);
+				ri.interSwap(rj, moveP, moveQ, dmatrix, false);
+			}
+			ri.findShortestPath(dmatrix);
+			rj.findShortestPath(dmatrix);
+			currCost = solution.getCost();
+
+			if (currCost < bestCost) {
+				ls.findLocalMinimum(solution); /* Polishing */
+				currCost = solution.getCost();
+				bestSolution = new Solution(solution);
+				bestCost = currCost;
+				snapshot = new SolutionSnapshot(solution);
+			} else {
+				snapshot.reload(moveR);
+				snapshot.reload(moveT);
+			}
+			++iteration;
+		}
+
+		return bestSolution;
+	}
+
+	/**
+	 * Keeps a move if it is admissible and the best so far,
+	 * breaking ties at random
+	 */
+	void consider(int kind, int r, int p, int t, int q, int delta, boolean tabu, int currCost, int bestCost) {
+		if (tabu && currCost + delta >= bestCost) return; /* Aspiration */
+		if (numOfTies > 0 && delta > moveDelta) return;
+		if (numOfTies > 0 && delta == moveDelta) {
+			if (random.nextInt(++numOfTies) != 0) return;
+		} else {
+			numOfTies = 1;
+		}
+		moveKind = kind;
+		moveR = r;
+		moveP = p;
+		moveT = t;
+		moveQ = q;
+		moveDelta = delta;
+	}
+
+	/**
+	 * @param c - customer
+	 * @param r - index of route
+	 * @return whether customers of the set of c can't enter route r
+	 */
+	boolean isTabu(Customer c, int r) {
+		return tabuList.contains(key(c, r), iteration);
+	}
+
+	/**
+	 * Forbids customers of the set of c from entering route r
+	 * @param c - customer
+	 * @param r - index of route
+	 */
+	void makeTabu(Customer c, int r) {
+		int tenure = minTenure + random.nextInt(maxTenure - minTenure + 1);
+		tabuList.put(key(c, r), iteration + tenure, iteration);
+	}
+
+	private long key(Customer c, int r) {
+		return (long) c.getSet().getId() * numOfRoutes + r;
+	}
+
+}
@@ -0,0 +1,72 @@
+package gvrp.search;
+
+import gvrp.Solution;
+
+/**
+ * <p>Bounded set of the hashes of the last local minima found, so that a
+ * local search reaching one of them again can stop right away, instead of
+ * exploring every neighbourhood only to find out that it can't improve it.
+ *
+ * <p>Hashes are kept in an {@link ExpiringHashTable}, where each one expires
+ * after a given number of local minima have been added since, which bounds
+ * the memory used. The same instance can be shared by local searches
+ * running in different threads.
+ *
+ * @see Solution#getHash()
+ */
+public class VisitedSolutions {
+
+	final ExpiringHashTable table;
+	final int capacity;
+	long numOfAdditions = 0;
+	long numOfRevisits = 0;
+
+	/**
+	 * @param capacity - number of local minima remembered
+	 */
+	public VisitedSolutions(int capacity) {
+		this.capacity = capacity;
+		this.table = new ExpiringHashTable(capacity);
+	}
+
+	/**
+	 * Remembers a local minimum, forgetting the oldest one if full
+	 * @param solution - local minimum
+	 */
+	public synchronized void add(Solution solution) {
+		++numOfAdditions;
+		table.put(solution.getHash(), numOfAdditions + capacity, numOfAdditions);
+	}
+
+	/**
+	 * @param solution - solution
+	 * @return whether the solution is a local minimum found recently
+	 */
+	public synchronized boolean contains(Solution solution) {
+		if (!table.contains(solution.getHash(), numOfAdditions)) return false;
+		++numOfRevisits;
+		return true;
+	}
+
+	/**
+	 * @return number of local minima added
+	 */
+	public synchronized long getNumberOfAdditions() {
+		return numOfAdditions;
+	}
+
+	/**
+	 * @return number of times a local search reached a known local minimum
+	 */
+	public synchronized long getNumberOfRevisits() {
+		return numOfRevisits;
+	}
+
+	/**
+	 * @return number of local minima remembered
+	 */
+	public synchronized int size() {
+		return table.size(numOfAdditions);
+	}
+
+}
@@ -0,0 +1,110 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.beust.jcommander.ParameterException;
+
+import gvrp.acceptance.*;
+import gvrp.jcommander.AcceptanceCriterionName;
+
+class AcceptanceCriterionTest {
+
+	@Test
+	@DisplayName("random walk")
+	void testRandomWalk() {
+		AcceptanceCriterion walk = new RandomWalk();
+		walk.initialise(100);
+		assertTrue(walk.acceptsEverything(), () -> "should tell searches it accepts everything");
+		assertTrue(walk.accept(1000, 100, 100), () -> "and accept worse local minima");
+	}
+
+	@Test
+	@DisplayName("simulated annealing")
+	void testSimulatedAnnealing() {
+		AcceptanceCriterion sa = new SimulatedAnnealing(0, 0.01, 1.0);
+		sa.initialise(1000);
+		assertTrue(sa.accept(990, 1000, 990), () -> "should accept improvements");
+		int numOfAccepted = 0;
+		for (int i = 0; i < 1000; i++)
+			if (sa.accept(1010, 1000, 1000)) ++numOfAccepted;
+		assertEquals(500, numOfAccepted, 50, () -> "should accept the initial deviation half the time");
+
+		AcceptanceCriterion cooling = new SimulatedAnnealing(0, 0.01, 0.9);
+		cooling.initialise(1000);
+		for (int i = 0; i < 200; i++) cooling.accept(1000, 1000, 1000);
+		for (int i = 0; i < 100; i++)
+			assertFalse(cooling.accept(1001, 1000, 1000), () -> "should stop accepting worse minima as it cools down");
+		assertTrue(cooling.accept(1000, 1000, 1000), () -> "but still accept equal ones");
+
+		AcceptanceCriterion first = new SimulatedAnnealing(42, 0.01, 1.0), second = new SimulatedAnnealing(42, 0.01, 1.0);
+		first.initialise(1000);
+		second.initialise(1000);
+		for (int i = 0; i < 100; i++)
+			assertEquals(first.accept(1010, 1000, 1000), second.accept(1010, 1000, 1000),
+					() -> "should be deterministic for a given seed");
+	}
+
+	@Test
+	@DisplayName("threshold accepting")
+	void testThresholdAccepting() {
+		AcceptanceCriterion threshold = new ThresholdAccepting(0.01, 0.5);
+		threshold.initialise(1000); /* Threshold 10 */
+		assertTrue(threshold.accept(1010, 1000, 1000), () -> "should accept worsenings up to the threshold");
+		assertFalse(threshold.accept(1010, 1000, 1000), () -> "which decays every iteration (5)");
+		assertTrue(threshold.accept(1002, 1000, 1000), () -> "(2.5)");
+		assertFalse(threshold.accept(1002, 1000, 1000), () -> "(1.25)");
+		assertTrue(threshold.accept(990, 1000, 990), () -> "should accept improvements");
+	}
+
+	@Test
+	@DisplayName("record-to-record travel")
+	void testRecordToRecord() {
+		AcceptanceCriterion rtr = new RecordToRecord(0.1);
+		rtr.initialise(100);
+		assertTrue(rtr.accept(105, 110, 100), () -> "should accept improvements over the current cost");
+		assertTrue(rtr.accept(110, 100, 100), () -> "should accept costs within the deviation of the record");
+		assertFalse(rtr.accept(111, 100, 100), () -> "but not beyond it");
+		assertTrue(rtr.accept(111, 100, 102), () -> "measuring it relative to the record, not the current cost");
+		assertFalse(rtr.accept(111, 105, 100), () -> "in both directions");
+	}
+
+	@Test
+	@DisplayName("late acceptance hill climbing")
+	void testLateAcceptance() {
+		AcceptanceCriterion lahc = new LateAcceptance(3);
+		lahc.initialise(200);
+		assertTrue(lahc.accept(150, 120, 120), () -> "should accept costs below the initial history");
+		assertTrue(lahc.accept(140, 150, 120), () -> "should accept improvements");
+		assertTrue(lahc.accept(130, 140, 120), () -> "should accept improvements");
+		/* History wraps around: 150, 140, 130 */
+		assertTrue(lahc.accept(149, 130, 120), () -> "should compare with the cost of as many iterations ago as its length");
+		assertFalse(lahc.accept(141, 140, 120), () -> "and reject costs above it");
+		assertTrue(lahc.accept(135, 140, 120), () -> "unless they improve the current cost");
+		/* History: 149, 140, 135 */
+		assertFalse(lahc.accept(150, 135, 120), () -> "and keep the accepted costs in the history");
+		assertTrue(lahc.accept(140, 135, 120), () -> "and the current cost of rejections");
+	}
+
+	@Test
+	@DisplayName("the creation of criteria by name")
+	void testFactory() {
+		assertTrue(AcceptanceFactory.create("walk", 0, 0.01, 0.99, 10) instanceof RandomWalk);
+		assertTrue(AcceptanceFactory.create("sa", 0, 0.01, 0.99, 10) instanceof SimulatedAnnealing);
+		assertTrue(AcceptanceFactory.create("threshold", 0, 0.01, 0.99, 10) instanceof ThresholdAccepting);
+		assertTrue(AcceptanceFactory.create("rtr", 0, 0.01, 0.99, 10) instanceof RecordToRecord);
+		assertTrue(AcceptanceFactory.create("lahc", 0, 0.01, 0.99, 10) instanceof LateAcceptance);
+		assertNull(AcceptanceFactory.create("tabu", 0, 0.01, 0.99, 10), () -> "should not create unknown criteria");
+
+		AcceptanceCriterionName validator = new AcceptanceCriterionName();
+		for (String name : AcceptanceFactory.NAMES) {
+			assertNotNull(AcceptanceFactory.create(name, 0, 0.01, 0.99, 10), () -> "should create every listed criterion");
+			assertDoesNotThrow(() -> validator.validate("-acceptance", name), () -> "should accept listed names");
+		}
+		assertThrows(ParameterException.class, () -> validator.validate("-acceptance", "tabu"),
+				() -> "should reject unknown names");
+	}
+
+}
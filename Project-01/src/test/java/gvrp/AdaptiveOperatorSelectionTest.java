@@ -0,0 +1,39 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.search.AdaptiveOperatorSelection;
+
+class AdaptiveOperatorSelectionTest {
+
+	@Test
+	@DisplayName("the order of neighbourhood levels")
+	void testOrder() {
+		AdaptiveOperatorSelection aos = new AdaptiveOperatorSelection();
+		SplittableRandom random = new SplittableRandom(0);
+		int numOfLevels = aos.getNumberOfLevels();
+		int [] order = aos.getOrder(random);
+		assertEquals(numOfLevels, order.length, () -> "should explore every level at first");
+		/* Level 1 pays off, level 0 never does, others a little */
+		for (int level = 0; level < numOfLevels; level++)
+			aos.register(level, level == 1 ? 1000 : level == 0 ? 0 : 10, 1000000);
+		int numOfFirsts = 0, numOfSkips = 0;
+		for (int i = 0; i < 1000; i++) {
+			order = aos.getOrder(random);
+			if (order[0] == 1) ++numOfFirsts;
+			boolean skipped = true;
+			for (int level : order) if (level == 0) skipped = false;
+			if (skipped) ++numOfSkips;
+		}
+		assertTrue(numOfFirsts > 800, () -> "should usually explore the best level first");
+		assertTrue(numOfSkips > 900, () -> "should usually skip levels that never pay off");
+		assertTrue(numOfSkips < 1000, () -> "but explore them once in a while");
+		assertTrue(aos.getWeight(1) > aos.getWeight(2), () -> "should weigh levels by gain per time");
+	}
+
+}
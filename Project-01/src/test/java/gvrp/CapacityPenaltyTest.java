@@ -0,0 +1,101 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.CapacityPenalty;
+import gvrp.search.LocalSearch;
+
+class CapacityPenaltyTest {
+
+	/**
+	 * Registers a window of local minima, the given number of them feasible
+	 * @return whether the penalty changed
+	 */
+	static boolean registerWindow(CapacityPenalty penalty, int numOfFeasible) {
+		boolean changed = false;
+		for (int i = 0; i < CapacityPenalty.WINDOW; i++)
+			changed = penalty.register(i < numOfFeasible);
+		return changed;
+	}
+
+	@Test
+	@DisplayName("the adjustment of the penalty to the target fraction")
+	void testAdjustment() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		CapacityPenalty penalty = new CapacityPenalty(instance, 0.5);
+		double initial = penalty.getPenalty();
+		assertTrue(initial >= CapacityPenalty.MIN_PENALTY, () -> "should start within bounds");
+
+		for (int i = 0; i < CapacityPenalty.WINDOW - 1; i++)
+			assertFalse(penalty.register(false), () -> "should wait for a full window");
+		assertTrue(penalty.register(false), () -> "and then adjust");
+		assertTrue(penalty.getPenalty() > initial, () -> "increasing it when too few minima are feasible");
+
+		double increased = penalty.getPenalty();
+		assertFalse(registerWindow(penalty, CapacityPenalty.WINDOW / 2), () -> "should keep it at the target");
+		assertEquals(increased, penalty.getPenalty());
+
+		assertTrue(registerWindow(penalty, CapacityPenalty.WINDOW), () -> "should adjust it");
+		assertTrue(penalty.getPenalty() < increased, () -> "decreasing it when too many minima are feasible");
+
+		for (int i = 0; i < 1000; i++) registerWindow(penalty, 0);
+		assertEquals(CapacityPenalty.MAX_PENALTY, penalty.getPenalty(), () -> "should not exceed the maximum");
+		for (int i = 0; i < 1000; i++) registerWindow(penalty, CapacityPenalty.WINDOW);
+		assertEquals(CapacityPenalty.MIN_PENALTY, penalty.getPenalty(), () -> "nor go below the minimum");
+	}
+
+	@Test
+	@DisplayName("the convergence of the feasible fraction")
+	void testConvergence() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		double target = 0.3;
+		CapacityPenalty penalty = new CapacityPenalty(instance, target);
+		/* Local minima are feasible more often as the penalty grows */
+		Random random = new Random(0);
+		double fraction = 0;
+		for (int window = 0; window < 200; window++) {
+			int numOfFeasible = 0;
+			for (int i = 0; i < CapacityPenalty.WINDOW; i++) {
+				boolean feasible = random.nextDouble() < penalty.getPenalty() / (penalty.getPenalty() + 10);
+				if (feasible) ++numOfFeasible;
+				penalty.register(feasible);
+			}
+			fraction = 0.9 * fraction + 0.1 * numOfFeasible / CapacityPenalty.WINDOW;
+		}
+		assertEquals(target, fraction, 0.1, () -> "should bring the feasible fraction close to the target");
+	}
+
+	@Test
+	@DisplayName("the repair of infeasible local minima")
+	void testRepair() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		double penalty = new CapacityPenalty(instance, 0.2).getPenalty();
+		int numOfRepairs = 0;
+		for (long seed = 0; seed < 10; seed++) {
+			LocalSearch ls = new LocalSearch(seed);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			solution.setCapacityPenalty(CapacityPenalty.MIN_PENALTY);
+			ls.perturbSolution(solution, instance.getNumberOfCustomers() / 2);
+			ls.findLocalMinimum(solution);
+			assertTrue(solution.isValid(true, false), () -> "should keep solutions valid apart from capacity");
+			if (solution.isFeasible()) continue;
+			Solution repaired = new Solution(solution);
+			int cost = solution.getCost();
+			assertTrue(ls.repair(repaired, penalty), () -> "should repair the local minimum");
+			assertTrue(repaired.isFeasible(), () -> "into a capacity-feasible solution");
+			repaired.setCapacityPenalty(-1);
+			assertTrue(repaired.isValid(true), () -> "which is valid");
+			assertFalse(solution.isFeasible(), () -> "leaving the original solution infeasible");
+			assertEquals(cost, solution.getCost(), () -> "and untouched");
+			++numOfRepairs;
+		}
+		assertTrue(numOfRepairs > 0, () -> "should find infeasible local minima with a low penalty");
+	}
+
+}
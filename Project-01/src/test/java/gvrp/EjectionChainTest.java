@@ -0,0 +1,38 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.EjectionChain;
+
+class EjectionChainTest {
+
+	@Test
+	@DisplayName("ejection chains on a local minimum")
+	void testEjectionChains() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "A-n32-k5-C11-V2", "G-n262-k25-C88-V9"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			EjectionChain chain = new EjectionChain(3);
+			chain.load(solution);
+			int cost = solution.getCost();
+			for (Customer c : new ArrayList<>(instance.getCustomers())) {
+				if (chain.apply(c)) {
+					int newCost = solution.getCost();
+					assertTrue(newCost < cost, () -> "should output a lower cost when applied");
+					cost = newCost;
+				} else {
+					assertEquals(cost, solution.getCost(), () -> "but stay the same when not applied");
+				}
+				assertTrue(solution.isValid(true), () -> "should keep the solution valid");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.search.ExactSolver;
+
+class ExactSolverTest {
+
+	@Test
+	@DisplayName("the exact solver on small instances")
+	void testExactSolver() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "P-n19-k2-C7-V1", "A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		int [] optima = {170, 111, 386, 336};
+		for (int i = 0; i < names.length; i++) {
+			Instance instance = SplitTest.loadInstance(names[i]);
+			assertTrue(ExactSolver.canSolve(instance), () -> "should solve small instances");
+			Solution solution = ExactSolver.solve(instance);
+			assertNotNull(solution, () -> "should find a solution");
+			assertTrue(solution.isValid(true), () -> "which is valid");
+			assertEquals(optima[i], solution.getCost(), () -> "and optimal");
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.search.ExpiringHashTable;
+
+class ExpiringHashTableTest {
+
+	@Test
+	@DisplayName("keys expire after their iteration")
+	void testExpiry() {
+		ExpiringHashTable table = new ExpiringHashTable(4);
+		table.put(42, 10, 1);
+		assertTrue(table.contains(42, 9), () -> "should contain key before expiry");
+		assertFalse(table.contains(42, 10), () -> "should not contain key after expiry");
+		table.put(42, 20, 10);
+		assertTrue(table.contains(42, 15), () -> "should renew an expired key");
+		table.clear();
+		assertFalse(table.contains(42, 15), () -> "should not contain keys after clear");
+	}
+
+	@Test
+	@DisplayName("the same keys as a hash map")
+	void testAgainstHashMap() {
+		ExpiringHashTable table = new ExpiringHashTable(8);
+		HashMap<Long, Long> map = new HashMap<>();
+		Random random = new Random(0);
+		for (long now = 1; now <= 20000; now++) {
+			long key = random.nextInt(500) - 250;
+			long expiry = now + 1 + random.nextInt(30);
+			table.put(key, expiry, now);
+			map.put(key, expiry);
+			long probe = random.nextInt(500) - 250;
+			boolean expected = map.containsKey(probe) && map.get(probe) > now;
+			assertEquals(expected, table.contains(probe, now), () -> "should agree with a hash map");
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class InstanceArraysTest {
+
+	@Test
+	@DisplayName("the struct-of-arrays view of an instance")
+	void testArrays() throws Exception {
+		Instance instance = SplitTest.loadInstance("B-n45-k6-C15-V2");
+		InstanceArrays arrays = instance.getArrays();
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		for (Customer ci : instance.getCustomers()) {
+			int i = ci.getId();
+			assertSame(ci, arrays.customers[i], () -> "should map ids to customers");
+			assertEquals(ci.getPoint().getX(), arrays.x[i], () -> "with their coordinates");
+			assertEquals(ci.getPoint().getY(), arrays.y[i], () -> "with their coordinates");
+			if (ci.getSet() == null) continue; /* depot */
+			assertEquals(ci.getSet().getId(), arrays.setOf[i], () -> "and their sets");
+			assertEquals(ci.getDemand(), arrays.getDemand(i), () -> "and their demands");
+			assertEquals(ci.distanceFrom(instance.getDepot()), dmatrix.getDistanceFromDepot(ci),
+					() -> "should keep the distances from the depot");
+			for (Customer cj : instance.getCustomers())
+				assertEquals(ci.distanceFrom(cj), dmatrix.getDistance(i, cj.getId()),
+						() -> "and between customers");
+		}
+		for (CustomerSet set : instance.getSets()) {
+			int s = set.getId();
+			assertEquals(set.size(), arrays.setStart[s+1] - arrays.setStart[s], () -> "should keep every member of a set");
+			int a = arrays.setStart[s];
+			for (Customer c : set)
+				assertEquals(c.getId(), arrays.setMembers[a++], () -> "in the order of the set");
+		}
+	}
+
+}
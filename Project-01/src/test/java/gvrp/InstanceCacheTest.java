@@ -0,0 +1,113 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InstanceCacheTest {
+
+	@TempDir
+	Path directory;
+
+	void assertSameInstance(Instance expected, Instance actual) {
+		assertEquals(expected.getName(), actual.getName(), () -> "should keep the name");
+		assertEquals(expected.getFleet(), actual.getFleet(), () -> "and the fleet");
+		assertEquals(expected.getCapacity(), actual.getCapacity(), () -> "and the capacity");
+		assertEquals(expected.getDepot(), actual.getDepot(), () -> "and the depot");
+		assertEquals(expected.getNumberOfCustomers(), actual.getNumberOfCustomers(), () -> "and the customers");
+		for (int i = 0; i < expected.getNumberOfCustomers(); i++) {
+			Customer ci = expected.getCustomers().get(i), cj = actual.getCustomers().get(i);
+			assertEquals(ci.getPoint(), cj.getPoint(), () -> "with their coordinates");
+			if (ci.getSet() != null)
+				assertEquals(ci.getDemand(), cj.getDemand(), () -> "and their demands");
+			for (int j = 0; j < expected.getNumberOfCustomers(); j++)
+				assertEquals(expected.getDistancematrix().getDistance(i, j), actual.getDistancematrix().getDistance(i, j),
+						() -> "and the distances between them");
+			ArrayList<Integer> expectedIds = new ArrayList<>(), actualIds = new ArrayList<>();
+			expected.getGammaSet().getClosestNeighbours(ci).forEach((c) -> expectedIds.add(c.getId()));
+			actual.getGammaSet().getClosestNeighbours(cj).forEach((c) -> actualIds.add(c.getId()));
+			assertEquals(expectedIds, actualIds, () -> "and their closest customers");
+		}
+		assertEquals(expected.getNumberOfSets(), actual.getNumberOfSets(), () -> "and the sets");
+		for (int i = 0; i < expected.getNumberOfSets(); i++) {
+			CustomerSet si = expected.getSets().get(i), sj = actual.getSets().get(i);
+			assertEquals(si, sj, () -> "with their customers");
+			assertEquals(si.getDemand(), sj.getDemand(), () -> "and their demands");
+			assertEquals(expected.getDepotSetDistance(si), actual.getDepotSetDistance(sj), () -> "and their distances");
+			for (int j = 0; j < expected.getNumberOfSets(); j++)
+				assertEquals(expected.getSetDistance(si, expected.getSets().get(j)), actual.getSetDistance(sj, actual.getSets().get(j)),
+						() -> "and their distances");
+			assertEquals(expected.getGammaSet().getClosestSets(si), actual.getGammaSet().getClosestSets(sj),
+					() -> "and their closest sets");
+		}
+	}
+
+	@Test
+	@DisplayName("loading instances from the cache")
+	void testCache() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		InstanceCache cache = new InstanceCache(directory.toFile());
+		for (String name : names) {
+			File file = new File("data/GVRP3/" + name + ".gvrp");
+			Instance parsed = SplitTest.loadInstance(name);
+			assertSameInstance(parsed, cache.load(file, 20, false));
+			File cacheFile = directory.resolve(InstanceCache.getKey(Files.readAllBytes(file.toPath()), 20) + ".bin").toFile();
+			assertTrue(cacheFile.isFile(), () -> "should write the cache on the first load");
+			assertSameInstance(parsed, InstanceCache.read(cacheFile, 20, false));
+			assertSameInstance(parsed, cache.load(file, 20, false));
+		}
+	}
+
+	@Test
+	@DisplayName("rebuilding invalid caches")
+	void testInvalidCache() throws Exception {
+		File file = new File("data/GVRP3/A-n32-k5-C11-V2.gvrp");
+		Instance parsed = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		InstanceCache cache = new InstanceCache(directory.toFile());
+		cache.load(file, 20, false);
+		File cacheFile = directory.resolve(InstanceCache.getKey(Files.readAllBytes(file.toPath()), 20) + ".bin").toFile();
+		assertNull(InstanceCache.read(cacheFile, 10, false), () -> "should not read caches of another gamma set size");
+		byte [] bytes = Files.readAllBytes(cacheFile.toPath());
+		Files.write(cacheFile.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+		assertNull(InstanceCache.read(cacheFile, 20, false), () -> "should not read truncated caches");
+		assertSameInstance(parsed, cache.load(file, 20, false));
+		assertEquals(bytes.length, cacheFile.length(), () -> "should rewrite truncated caches");
+	}
+
+	@Test
+	@DisplayName("rebuilding corrupted caches")
+	void testCorruptedCache() throws Exception {
+		File file = new File("data/GVRP3/A-n32-k5-C11-V2.gvrp");
+		Instance parsed = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		InstanceCache cache = new InstanceCache(directory.toFile());
+		cache.load(file, 20, false);
+		File cacheFile = directory.resolve(InstanceCache.getKey(Files.readAllBytes(file.toPath()), 20) + ".bin").toFile();
+		byte [] bytes = Files.readAllBytes(cacheFile.toPath());
+
+		/* Header, name, dimension, fleet, capacity and set count, then x, y and set of each customer */
+		int nameLength = ByteBuffer.wrap(bytes).getInt(12);
+		int depotSetOffset = 16 + nameLength + 16 + 8;
+		byte [] corrupted = bytes.clone();
+		ByteBuffer.wrap(corrupted).putInt(depotSetOffset, 1);
+		Files.write(cacheFile.toPath(), corrupted);
+		assertNull(InstanceCache.read(cacheFile, 20, false), () -> "should not read caches the builder rejects");
+		assertSameInstance(parsed, cache.load(file, 20, false));
+		assertArrayEquals(bytes, Files.readAllBytes(cacheFile.toPath()), () -> "should rewrite corrupted caches");
+
+		ByteBuffer.wrap(corrupted).putInt(depotSetOffset, 0).putInt(depotSetOffset + 12, -1);
+		Files.write(cacheFile.toPath(), corrupted);
+		assertNull(InstanceCache.read(cacheFile, 20, false), () -> "should not read caches with unknown sets");
+		assertSameInstance(parsed, cache.load(file, 20, false));
+		assertArrayEquals(bytes, Files.readAllBytes(cacheFile.toPath()), () -> "should rewrite corrupted caches");
+	}
+
+}
@@ -0,0 +1,36 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.analysis.LowerBound;
+import gvrp.construction.SolutionFactory;
+import gvrp.search.ExactSolver;
+
+class LowerBoundTest {
+
+	@Test
+	@DisplayName("the lower bound of small instances")
+	void testLowerBound() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "P-n19-k2-C7-V1", "A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			int optimum = ExactSolver.solve(instance).getCost();
+			int upperBound = SolutionFactory.construct(instance, "greedy").getCost();
+			LowerBound lowerBound = new LowerBound(instance, upperBound);
+			assertTrue(lowerBound.getValue() > 0, () -> "should be positive");
+			assertTrue(lowerBound.getValue() <= optimum, () -> "should not exceed the optimal cost");
+			assertTrue(lowerBound.getDegreeBound() <= lowerBound.getValue() &&
+					lowerBound.getSpanningForestBound() <= lowerBound.getValue() &&
+					lowerBound.getLagrangianBound() <= lowerBound.getValue(),
+					() -> "should be the best of all bounds");
+			assertTrue(lowerBound.getLagrangianBound() >= lowerBound.getSpanningForestBound(),
+					() -> "should improve the spanning forest bound by subgradient optimisation");
+			assertEquals(0.0, lowerBound.getGap(lowerBound.getValue()), () -> "should have no gap to itself");
+			assertTrue(lowerBound.getGap(optimum) >= 0, () -> "but some to the optimal cost");
+		}
+	}
+
+}
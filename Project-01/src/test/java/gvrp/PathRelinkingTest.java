@@ -0,0 +1,62 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.LocalSearch;
+import gvrp.search.PathRelinking;
+
+class PathRelinkingTest {
+
+	@Test
+	@DisplayName("path relinking between local minima")
+	void testPathRelinking() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		PathRelinking relinking = new PathRelinking(new LocalSearch(0), 0);
+		int bestCost = Integer.MAX_VALUE;
+		for (long seed = 0; seed < 4; seed++) {
+			LocalSearch ls = new LocalSearch(seed);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			ls.perturbSolution(solution, instance.getNumberOfCustomers() / 2);
+			ls.findLocalMinimum(solution);
+			bestCost = Math.min(bestCost, solution.getCost());
+			relinking.offer(solution);
+		}
+		relinking.start();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (relinking.getNumberOfPaths() < 10 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		relinking.stop();
+		assertTrue(relinking.getNumberOfPaths() > 0, () -> "should walk between elite solutions");
+		assertNull(relinking.getImprovement(Integer.MIN_VALUE), () -> "should only report cheaper solutions");
+		Solution best = relinking.getImprovement(Integer.MAX_VALUE);
+		assertTrue(best.isValid(true), () -> "should keep solutions valid");
+		assertTrue(best.getCost() <= bestCost, () -> "should keep the best elite solution");
+		assertTrue(relinking.getNumberOfImprovements() == 0 || best.getCost() < bestCost,
+				() -> "and report improvements over it");
+	}
+
+	@Test
+	@DisplayName("handing out private copies of elite solutions")
+	void testCopies() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		PathRelinking relinking = new PathRelinking(new LocalSearch(0), 0);
+		LocalSearch ls = new LocalSearch(0);
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		ls.findLocalMinimum(solution);
+		int cost = solution.getCost();
+		relinking.offer(solution);
+		Solution first = relinking.getImprovement(Integer.MAX_VALUE);
+		assertNotSame(solution, first, () -> "should not hand out the pooled solution");
+		assertEquals(solution, first, () -> "but a copy of it");
+		ls.perturbSolution(first, instance.getNumberOfCustomers());
+		assertTrue(first.getCost() != cost, () -> "which can be changed");
+		Solution second = relinking.getImprovement(Integer.MAX_VALUE);
+		assertEquals(cost, second.getCost(), () -> "without changing the pooled solution");
+		assertTrue(second.isValid(true), () -> "without changing the pooled solution");
+	}
+
+}
@@ -0,0 +1,37 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.search.PerturbationStrength;
+
+class PerturbationStrengthTest {
+
+	@Test
+	@DisplayName("the adaptive perturbation strength")
+	void testStrength() {
+		PerturbationStrength strength = new PerturbationStrength(100, 0.25, 0.02, 0.5);
+		assertEquals(25, strength.getSize(), () -> "should start from the initial fraction");
+		strength.register(1000);
+		assertTrue(strength.getSize() < 25, () -> "should decrease after an improvement");
+		for (int i = 0; i < 100; i++)
+			strength.register(1000 - i);
+		assertEquals(2, strength.getSize(), () -> "but never below the lower bound");
+		int size = strength.getSize();
+		for (int i = 1; i < PerturbationStrength.STAGNATION; i++)
+			assertFalse(strength.register(1000), () -> "should keep the strength for a while on stagnation");
+		assertTrue(strength.register(1000), () -> "but then change it");
+		assertTrue(strength.getSize() > size, () -> "by increasing it");
+		for (int i = 0; i < 1000; i++)
+			strength.register(1000);
+		assertEquals(50, strength.getSize(), () -> "but never above the upper bound");
+		PerturbationStrength fixed = new PerturbationStrength(10, 0.01, 0.01, 0.01);
+		fixed.register(10);
+		for (int i = 0; i < 100; i++)
+			fixed.register(20);
+		assertEquals(1, fixed.getSize(), () -> "should apply at least one perturbation");
+	}
+
+}
@@ -0,0 +1,45 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.LocalSearch;
+import gvrp.search.RoutePool;
+
+class RoutePoolTest {
+
+	@Test
+	@DisplayName("the recombination of pooled routes")
+	void testRecombination() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			RoutePool pool = new RoutePool(instance, 1000);
+			LocalSearch ls = new LocalSearch(0);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			ls.findLocalMinimum(solution);
+			pool.addAll(solution);
+			int size = pool.size();
+			assertEquals(instance.getFleet(), size, () -> "should keep every route");
+			pool.addAll(new Solution(solution));
+			assertEquals(size, pool.size(), () -> "but not duplicates");
+			int bestCost = solution.getCost();
+			for (int i = 0; i < 20; i++) {
+				ls.perturbSolution(solution, Math.max(instance.getNumberOfCustomers() / 4, 1));
+				ls.findLocalMinimum(solution);
+				pool.addAll(solution);
+				bestCost = Math.min(bestCost, solution.getCost());
+			}
+			Solution recombined = pool.recombine(Integer.MAX_VALUE, Long.MAX_VALUE);
+			assertNotNull(recombined, () -> "should find a solution");
+			assertTrue(recombined.isValid(true), () -> "which is valid");
+			assertTrue(recombined.getCost() <= bestCost, () -> "and no worse than the ones pooled");
+			assertNull(pool.recombine(recombined.getCost(), Long.MAX_VALUE),
+					() -> "and optimal among the pooled routes");
+		}
+	}
+
+}
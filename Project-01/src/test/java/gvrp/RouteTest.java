@@ -4,8 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Scanner;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -49,7 +49,7 @@ class RouteTest {
 		File instanceFile = new File("data/GVRP3/G-n262-k25-C88-V9.gvrp");
 		/* Largest instance file in hand */
 		try {
-			Scanner sc = new Scanner(instanceFile);
+			Tokenizer sc = new Tokenizer(instanceFile);
 			instance = Instance.parse(sc, 20, false);
 			sc.close();
 		} catch (Exception e) {
@@ -167,6 +167,58 @@ class RouteTest {
 			testInterMove(n, (r,p,q,d,o) -> route.inter2OptStar(r,p,q,d,o));
 		}
 		
+		@RepeatedTest(value = numOfRoutes*numOfRoutes)
+		@DisplayName("after inter CROSS-exchange")
+		void testInterCrossExchange(RepetitionInfo info) {
+			int n = info.getCurrentRepetition() - 1;
+			testInterMove(n, (r,p,q,d,o) -> route.interCrossExchange(r,p,q,2,1,true,false,d,o));
+			testInterMove(n, (r,p,q,d,o) -> route.interCrossExchange(r,p,q,3,2,false,true,d,o));
+		}
+		
+		@RepeatedTest(value = numOfRoutes*numOfRoutes)
+		@DisplayName("after inter segment relocation")
+		void testInterSegmentRelocation(RepetitionInfo info) {
+			int n = info.getCurrentRepetition() - 1;
+			testInterMove(n, (r,p,q,d,o) -> route.interCrossExchange(r,p,q,2,0,true,false,d,o));
+		}
+		
+		@RepeatedTest(value = numOfRoutes*numOfRoutes)
+		@DisplayName("after inter SWAP*")
+		void testInterSwapStar(RepetitionInfo info) {
+			int n = info.getCurrentRepetition() - 1;
+			testInterMove(n, (r,p,q,d,o) -> route.interSwapStar(r,d,o));
+		}
+		
+		@RepeatedTest(value = numOfRoutes)
+		@DisplayName("after representative changes")
+		void testRepresentativeChange(RepetitionInfo info) {
+			int n = info.getCurrentRepetition() - 1;
+			getRouteInfo(n);
+			for (int p = 0; p < routeSize; p++) {
+				for (Customer c : route.get(p).getSet()) {
+					int delta = route.getRepresentativeDelta(p, c, dmatrix);
+					boolean done = route.changeRepresentative(p, c, dmatrix, true);
+					int newCost = route.getCost();
+					if (done) {
+						assertEquals(initialCost + delta, newCost, () -> "should change the cost by the delta");
+						assertTrue(initialCost > newCost, () -> "should output a lower cost when improves");
+						assertEquals(new Route(route, route.routeOf.clone(), route.positionOf.clone(), route.routedCustomerOf.clone()).getHash(), route.getHash(),
+								() -> "should keep the hash up to date");
+						initialCost = newCost;
+					} else {
+						assertEquals(initialCost, newCost, () -> "but stay the same when does not improve");
+					}
+				}
+			}
+			checkDistanceMapOfRoute(route);
+			route.improveRepresentatives(dmatrix);
+			assertTrue(route.getCost() <= initialCost, () -> "cost should not increase");
+			int bestCost = route.getCost();
+			route.findShortestPath(dmatrix);
+			assertTrue(route.getCost() <= bestCost, () -> "nor beat the shortest path");
+			assertEquals(0, route.improveRepresentatives(dmatrix), () -> "which has no improving change");
+		}
+		
 		@RepeatedTest(value = numOfRoutes)
 		@DisplayName("after a shortest path algorithm")
 		void testShortestPath(RepetitionInfo info) {
@@ -181,8 +233,12 @@ class RouteTest {
 		@AfterEach
 		void afterEach() {
 			if (route == null) return; /* ignore edge cases */
+			assertEquals(new Route(route, route.routeOf.clone(), route.positionOf.clone(), route.routedCustomerOf.clone()).getHash(), route.getHash(),
+					() -> "Moves applied in place should not leave the hash outdated");
 			for (int i = 0; i < route.size(); i++) {
 				Customer ci = route.get(i);
+				assertEquals(i, route.getPosition(ci),
+						() -> "Moves applied in place should not leave the positions outdated");
 				assertTrue(solution.isCustomerInRoute(ci),
 						() -> "All customers in route should be associated via the redundant field 'route', which should not be null");
 				assertEquals(route, solution.getCustomerRoute(ci),
@@ -247,7 +303,7 @@ class RouteTest {
 		void testEquality() {
 			assertEquals(solution, copy,
 					() -> "should output an equal copy");
-			assertEquals(solution.map, copy.map,
+			assertArrayEquals(solution.routeOf, copy.routeOf,
 					() -> "should have equal maps");
 		}
 		
@@ -255,12 +311,12 @@ class RouteTest {
 		@DisplayName("should be independent")
 		void testIndependentFields() {
 			/* Map */
-			assertFalse(solution.map.isEmpty(),
+			assertFalse(isZero(solution.routeOf),
 					() -> "solution map should not be empty");
-			solution.map.clear();
-			assertTrue(solution.map.isEmpty(),
-					() -> "solution map should be empty after called clear()");
-			assertFalse(copy.map.isEmpty(),
+			Arrays.fill(solution.routeOf, 0);
+			assertTrue(isZero(solution.routeOf),
+					() -> "solution map should be empty after cleared");
+			assertFalse(isZero(copy.routeOf),
 					() -> "should have independent maps");
 			
 			/* Routes */
@@ -276,27 +332,27 @@ class RouteTest {
 						() -> "should have independent routes");
 			}
 			
-			/* Route hash maps */
+			/* Route distance buffers */
 			for (Route route : solution) {
 				assertAll("Solution routes should not be empty",
-						() -> assertFalse(route.dLeft.isEmpty(),
+						() -> assertFalse(isZero(route.dLeft),
 								() -> "left route should not be empty"),
-						() -> assertFalse(route.dRight.isEmpty(),
+						() -> assertFalse(isZero(route.dRight),
 								() -> "left route should not be empty"));
-				route.dLeft.clear();
-				route.dRight.clear();
-				assertAll("Solution routes hash maps should be empty after called clear()",
-						() -> assertTrue(route.dLeft.isEmpty(),
-								() -> "left route hash maps should not be empty"),
-						() -> assertTrue(route.dRight.isEmpty(),
-								() -> "left route hash maps should not be empty"));
+				Arrays.fill(route.dLeft, 0);
+				Arrays.fill(route.dRight, 0);
+				assertAll("Solution routes distance buffers should be empty after cleared",
+						() -> assertTrue(isZero(route.dLeft),
+								() -> "left route distance buffers should not be empty"),
+						() -> assertTrue(isZero(route.dRight),
+								() -> "left route distance buffers should not be empty"));
 			}
 			for (Route route : copy) {
-				assertAll("should have independent hash maps",
-						() -> assertFalse(route.dLeft.isEmpty(),
-								() -> "left route hash maps should not be empty"),
-						() -> assertFalse(route.dRight.isEmpty(),
-								() -> "left route hash maps should not be empty"));
+				assertAll("should have independent distance buffers",
+						() -> assertFalse(isZero(route.dLeft),
+								() -> "left route distance buffers should not be empty"),
+						() -> assertFalse(isZero(route.dRight),
+								() -> "left route distance buffers should not be empty"));
 			}
 		}
 		
@@ -331,22 +387,28 @@ class RouteTest {
 		}
 		
 		boolean deepEquals(Solution s1, Solution s2) {
-			if (s1 == s2 || s1.equals(s2) || s1.map.equals(s2.map)) return true;
+			if (s1 == s2 || s1.equals(s2) || Arrays.equals(s1.routeOf, s2.routeOf)) return true;
 			return false;
 		}
 		
 		
 	}
 	
+	static boolean isZero(int [] buffer) {
+		for (int value : buffer)
+			if (value != 0) return false;
+		return true;
+	}
+	
 	void checkDistanceMapOfRoute(Route r) {
 		for(int i = 0; i < r.size() - 1; i++) {
 			Customer ci = r.get(i);
 			Customer cipp = r.get(i+1);
 			int dist = dmatrix.getDistanceBetween(ci, cipp);
-			assertTrue(dist >= r.dLeft.get(cipp) - r.dLeft.get(ci),
-					() -> ci + " " + cipp + " dist=" + dist + " in map=" + (r.dLeft.get(cipp) - r.dLeft.get(ci)));
-			assertTrue(dist >= r.dRight.get(ci) - r.dRight.get(cipp),
-					() -> ci + " " + cipp + " dist=" + dist + " in map=" + (r.dRight.get(ci) - r.dRight.get(cipp)));
+			assertTrue(dist >= r.dLeft[cipp.getId()] - r.dLeft[ci.getId()],
+					() -> ci + " " + cipp + " dist=" + dist + " in map=" + (r.dLeft[cipp.getId()] - r.dLeft[ci.getId()]));
+			assertTrue(dist >= r.dRight[ci.getId()] - r.dRight[cipp.getId()],
+					() -> ci + " " + cipp + " dist=" + dist + " in map=" + (r.dRight[ci.getId()] - r.dRight[cipp.getId()]));
 		}
 	}
 	
@@ -0,0 +1,96 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.LocalSearch;
+
+class SetDistanceTest {
+
+	@Test
+	@DisplayName("the minimum distances between sets")
+	void testSetDistances() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			DistanceMatrix dmatrix = instance.getDistancematrix();
+			for (CustomerSet si : instance.getSets()) {
+				int depotDistance = Integer.MAX_VALUE;
+				for (Customer ci : si)
+					depotDistance = Math.min(depotDistance, dmatrix.getDistanceFromDepot(ci));
+				assertEquals(depotDistance, instance.getDepotSetDistance(si),
+						() -> "should be the distance from the depot to the closest customer");
+				for (CustomerSet sj : instance.getSets()) {
+					int distance = si == sj ? 0 : Integer.MAX_VALUE;
+					for (Customer ci : si)
+						for (Customer cj : sj)
+							if (si != sj) distance = Math.min(distance, dmatrix.getDistanceBetween(ci, cj));
+					assertEquals(distance, instance.getSetDistance(si, sj),
+							() -> "should be the distance between the closest customers");
+					assertEquals(instance.getSetDistance(sj, si), instance.getSetDistance(si, sj),
+							() -> "in either direction");
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("the local search with granular pruning")
+	void testGranularity() throws Exception {
+		String [] names = {"A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			int initialCost = solution.getCost();
+			LocalSearch ls = new LocalSearch(0);
+			ls.setGranularity(2.0);
+			ls.findLocalMinimum(solution);
+			assertTrue(solution.isValid(true), () -> "should keep the solution valid");
+			assertTrue(solution.getCost() <= initialCost, () -> "and never make it worse");
+		}
+	}
+
+	@Test
+	@DisplayName("the closest sets of each set")
+	void testClosestSets() throws Exception {
+		Instance instance = SplitTest.loadInstance("B-n45-k6-C15-V2");
+		GammaSet gamma = instance.getGammaSet();
+		int k = Math.min(instance.getGammaK(), instance.getNumberOfSets() - 1);
+		for (CustomerSet si : instance.getSets()) {
+			ArrayList<CustomerSet> closestSets = gamma.getClosestSets(si);
+			assertEquals(k, closestSets.size(), () -> "should have k sets");
+			assertFalse(closestSets.contains(si), () -> "other than itself");
+			for (int j = 1; j < k; j++)
+				assertTrue(instance.getSetDistance(si, closestSets.get(j-1)) <= instance.getSetDistance(si, closestSets.get(j)),
+						() -> "ordered by proximity");
+			for (CustomerSet sj : instance.getSets())
+				if (sj != si && !closestSets.contains(sj))
+					assertTrue(instance.getSetDistance(si, sj) >= instance.getSetDistance(si, closestSets.get(k-1)),
+							() -> "and closer than the other sets");
+		}
+	}
+
+	@Test
+	@DisplayName("the local search with set neighbourhoods")
+	void testSetNeighbourhoods() throws Exception {
+		String [] names = {"A-n32-k5-C11-V2", "B-n45-k6-C15-V2"};
+		for (String name : names) {
+			Instance instance = SplitTest.loadInstance(name);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			int initialCost = solution.getCost();
+			LocalSearch ls = new LocalSearch(0);
+			ls.setSetNeighbourhoods(true);
+			ls.findLocalMinimum(solution);
+			assertTrue(solution.isValid(true), () -> "should keep the solution valid");
+			assertTrue(solution.getCost() < initialCost, () -> "and improve it");
+			ls.perturbSolution(solution, 5);
+			assertTrue(solution.isValid(true), () -> "even when perturbed");
+		}
+	}
+
+}
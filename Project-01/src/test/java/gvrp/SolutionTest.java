@@ -0,0 +1,231 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.search.LocalSearch;
+import gvrp.search.VisitedSolutions;
+
+class SolutionTest {
+
+	@Test
+	@DisplayName("the copy of a solution")
+	void testCopy() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		Solution copy = new Solution(solution);
+		assertEquals(solution, copy, () -> "should be equal to the original");
+		for (Route route : copy) {
+			for (Customer customer : route) {
+				assertSame(route, copy.getCustomerRoute(customer),
+						() -> "should map customers to the copied routes");
+			}
+		}
+		Route route = copy.get(0);
+		route.removeCustomer(route.getFirst(), instance.getDistancematrix());
+		assertNotEquals(solution, copy, () -> "should not share routes with the original");
+	}
+
+	@Test
+	@DisplayName("the routes and positions of customers")
+	void testCustomerPositions() throws Exception {
+		Instance instance = SplitTest.loadInstance("B-n45-k6-C15-V2");
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		LocalSearch ls = new LocalSearch(0);
+		for (int i = 0; i < 10; i++) {
+			ls.perturbSolution(solution, 5);
+			ls.findLocalMinimum(solution);
+			Solution copy = new Solution(solution);
+			for (Solution s : new Solution [] {solution, copy}) {
+				int numOfCustomersInRoutes = 0;
+				for (Route route : s) {
+					int position = 0;
+					for (Customer customer : route) {
+						assertSame(route, s.getCustomerRoute(customer), () -> "should map customers to their routes");
+						assertEquals(position++, s.getCustomerPosition(customer), () -> "and positions");
+					}
+					numOfCustomersInRoutes += route.size();
+				}
+				for (Customer customer : instance.getCustomers())
+					if (s.isCustomerInRoute(customer)) --numOfCustomersInRoutes;
+				assertEquals(0, numOfCustomersInRoutes, () -> "and no other customer to a route");
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("the validation of a solution")
+	void testValidation() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		assertTrue(solution.isValid(false), () -> "should accept a valid solution");
+
+		Solution copy = new Solution(solution);
+		Route route = copy.get(0);
+		Customer first = route.getFirst();
+		route.removeCustomer(first, dmatrix);
+		assertFalse(copy.isValid(false), () -> "should reject a missing set");
+		copy.get(1).insertCustomer(0, first, dmatrix);
+		assertEquals(copy.get(1).getCapacity() <= instance.getCapacity(), copy.isValid(false),
+				() -> "should check the capacity");
+		assertTrue(copy.isValid(false, false), () -> "unless it is penalised");
+
+		copy = new Solution(solution);
+		route = copy.get(0);
+		for (Customer c : route.getFirst().getSet()) {
+			if (c == route.getFirst()) continue;
+			route.insertCustomer(1, c, dmatrix);
+			break;
+		}
+		assertFalse(copy.isValid(false, false), () -> "should reject a set visited twice");
+
+		copy = new Solution(solution);
+		copy.get(0).remove(0);
+		copy.get(1).add(0, solution.get(0).getFirst());
+		assertFalse(copy.isValid(false, false), () -> "should reject customers mapped to other routes");
+	}
+
+	@Test
+	@DisplayName("the hash of a solution")
+	void testHash() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		Solution copy = new Solution(solution);
+		assertEquals(solution.getHash(), copy.getHash(), () -> "should be the same for equal solutions");
+		assertEquals(solution.hashCode(), copy.hashCode(), () -> "as well as the hash code");
+		Route route = copy.get(0);
+		Customer first = route.getFirst();
+		route.removeCustomer(first, dmatrix);
+		assertNotEquals(solution.getHash(), copy.getHash(), () -> "should change along with the routes");
+		route.insertCustomer(0, first, dmatrix);
+		assertEquals(solution.getHash(), copy.getHash(), () -> "and go back when the move is undone");
+		route.intra2Opt(0, route.size()-1, dmatrix, false);
+		assertEquals(solution.getHash(), copy.getHash(), () -> "regardless of the direction of routes");
+		assertNotEquals(solution, copy, () -> "even if routes are not equal");
+		route.intraSwap(0, 2, dmatrix, false);
+		assertNotEquals(solution.getHash(), copy.getHash(), () -> "but not of the order of customers");
+	}
+
+	@Test
+	@DisplayName("the visited local minima")
+	void testVisitedSolutions() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		VisitedSolutions visitedSolutions = new VisitedSolutions(2);
+		LocalSearch ls = new LocalSearch(0);
+		ls.setVisitedSolutions(visitedSolutions);
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		ls.findLocalMinimum(solution);
+		assertEquals(1, visitedSolutions.getNumberOfAdditions(), () -> "should record the local minimum");
+		assertEquals(1, visitedSolutions.size(), () -> "should record the local minimum");
+		assertTrue(visitedSolutions.contains(new Solution(solution)), () -> "by its hash");
+		assertEquals(1, visitedSolutions.getNumberOfRevisits());
+
+		assertEquals(0, ls.findLocalMinimum(solution), () -> "where the search stops right away");
+		assertEquals(2, visitedSolutions.getNumberOfRevisits(), () -> "as it detects the revisit");
+
+		Solution other = new Solution(solution);
+		ls.perturbSolution(other, instance.getNumberOfCustomers() / 2);
+		assertNotEquals(solution.getHash(), other.getHash(), () -> "should tell other solutions apart");
+		assertFalse(visitedSolutions.contains(other), () -> "and not mistake them for visited ones");
+		assertEquals(2, visitedSolutions.getNumberOfRevisits());
+
+		for (int i = 0; i < 3; i++) {
+			ls.perturbSolution(other, instance.getNumberOfCustomers() / 2);
+			ls.findLocalMinimum(other);
+			assertTrue(visitedSolutions.size() <= 2, () -> "should remember a bounded number of local minima");
+		}
+		if (visitedSolutions.getNumberOfAdditions() >= 3 && other.getHash() != solution.getHash())
+			assertFalse(visitedSolutions.contains(solution), () -> "forgetting the oldest ones");
+	}
+
+	@Test
+	@DisplayName("the routed customer of each set")
+	void testRoutedCustomer() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		Solution copy = new Solution(solution);
+		Route route = copy.get(0);
+		Customer first = route.getFirst(), other = null;
+		for (Customer c : first.getSet())
+			if (c != first) other = c;
+		assertSame(first, copy.getRoutedCustomer(first.getSet()), () -> "should be the customer in a route");
+		route.removeCustomer(first, dmatrix);
+		assertNull(copy.getRoutedCustomer(first.getSet()), () -> "or none if the set left the routes");
+		route.insertCustomer(0, other, dmatrix);
+		assertSame(other, copy.getRoutedCustomer(first.getSet()), () -> "and follow the customer that enters them");
+		assertSame(first, solution.getRoutedCustomer(first.getSet()), () -> "without changing the original solution");
+		route.changeRepresentative(0, first, dmatrix, false);
+		assertSame(first, copy.getRoutedCustomer(first.getSet()), () -> "including representative changes");
+		for (CustomerSet set : instance.getSets()) {
+			Customer routed = null;
+			for (Customer c : set)
+				if (copy.isCustomerInRoute(c)) routed = c;
+			assertSame(routed, copy.getRoutedCustomer(set), () -> "for every set");
+		}
+	}
+
+	/**
+	 * Hash of a solution computed from scratch, without the cached route data
+	 */
+	static long expectedHash(Solution solution) {
+		long hash = 0;
+		for (Route route : solution) {
+			Customer previous = null;
+			for (Customer c : route) {
+				hash += Route.getEdgeKey(previous, c);
+				previous = c;
+			}
+			if (previous != null) hash += Route.getEdgeKey(previous, null);
+		}
+		return hash;
+	}
+
+	@Test
+	@DisplayName("the hash of a solution across in-place moves")
+	void testHashAcrossMoves() throws Exception {
+		Instance instance = SplitTest.loadInstance("A-n32-k5-C11-V2");
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		Solution solution = SolutionFactory.construct(instance, "greedy");
+		solution.setCapacityPenalty(1.0); /* Lets moves exceed the capacity */
+		Random random = new Random(0);
+		String [] moves = {"intraShift", "interShift", "intraSwap", "interSwap", "intra2Opt",
+				"inter2OptStar", "interSwapStar", "changeRepresentative", "findShortestPath"};
+		for (int i = 0; i < 2000; i++) {
+			/* Reads the hash first, so that a stale cache would be kept */
+			solution.getHash();
+			Route ri = solution.get(random.nextInt(solution.size()));
+			Route rj = solution.get(random.nextInt(solution.size()));
+			if (ri.isEmpty()) continue;
+			int p = random.nextInt(ri.size()), q = random.nextInt(Math.max(rj.size(), 1));
+			String move = moves[i % moves.length];
+			switch (move) {
+				case "intraShift": ri.intraShift(p, random.nextInt(ri.size()), dmatrix, false); break;
+				case "interShift": if (ri.size() > 1) ri.interShift(rj, p, q, dmatrix, false); break;
+				case "intraSwap": ri.intraSwap(p, random.nextInt(ri.size()), dmatrix, false); break;
+				case "interSwap": ri.interSwap(rj, p, q, dmatrix, false); break;
+				case "intra2Opt": ri.intra2Opt(Math.min(p, q), Math.max(p, q), dmatrix, false); break;
+				case "inter2OptStar": ri.inter2OptStar(rj, p, q, dmatrix, false); break; /* snapshotModCount = -1 */
+				case "interSwapStar": ri.interSwapStar(rj, dmatrix, false); break;
+				case "changeRepresentative":
+					for (Customer c : ri.get(p).getSet())
+						if (c != ri.get(p)) {
+							ri.changeRepresentative(p, c, dmatrix, false);
+							break;
+						}
+					break;
+				case "findShortestPath": ri.findShortestPath(dmatrix); break; /* snapshotModCount = -1 */
+			}
+			assertEquals(expectedHash(solution), solution.getHash(), () -> "should stay up to date after " + move);
+			assertTrue(solution.isValid(true, false), () -> "and keep positions up to date after " + move);
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+
+import gvrp.construction.SolutionFactory;
+import gvrp.construction.Split;
+
+class SplitTest {
+
+	static Instance loadInstance(String name) throws Exception {
+		Tokenizer sc = new Tokenizer(new File("data/GVRP3/" + name + ".gvrp"));
+		Instance instance = Instance.parse(sc, 20, false);
+		sc.close();
+		return instance;
+	}
+
+	/**
+	 * Cost of the best partition of the tour into routes, by enumerating all
+	 * possible route boundaries. Returns {@code null} if there is none.
+	 */
+	static Integer bruteForce(Instance instance, ArrayList<Customer> tour, int firstCustomer, int routesLeft) {
+		DistanceMatrix dmatrix = instance.getDistancematrix();
+		int n = tour.size();
+		if (routesLeft == 0) return firstCustomer == n ? 0 : null;
+		Integer best = null;
+		int load = 0, cost = 0;
+		for (int last = firstCustomer; last < n; last++) {
+			Customer c = tour.get(last);
+			load += c.getDemand();
+			if (load > instance.getCapacity()) break;
+			if (last > firstCustomer) cost += dmatrix.getDistanceBetween(tour.get(last-1), c);
+			Integer rest = bruteForce(instance, tour, last+1, routesLeft-1);
+			if (rest == null) continue;
+			int total = rest + cost + dmatrix.getDistanceFromDepot(tour.get(firstCustomer))
+					+ dmatrix.getDistanceFromDepot(c);
+			if (best == null || total < best) best = total;
+		}
+		return best;
+	}
+
+	@Test
+	@DisplayName("the split of a solution giant tour")
+	void testSplitOfSolution() throws Exception {
+		String [] names = {"P-n16-k8-C6-V4", "A-n32-k5-C11-V2", "G-n262-k25-C88-V9"};
+		for (String name : names) {
+			Instance instance = loadInstance(name);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			Solution split = Split.split(instance, Split.giantTour(solution));
+			assertNotNull(split, () -> "should be feasible, since the solution itself is a partition");
+			assertTrue(split.isValid(true), () -> "should be a valid solution");
+			assertTrue(split.getCost() <= solution.getCost(), () -> "should not be worse than the original partition");
+		}
+	}
+
+	@RepeatedTest(value = 50)
+	@DisplayName("the split of a random giant tour")
+	void testSplitOfRandomTour(RepetitionInfo info) throws Exception {
+		Instance instance = loadInstance("P-n16-k8-C6-V4");
+		Random random = new Random(info.getCurrentRepetition());
+		ArrayList<Customer> tour = new ArrayList<>();
+		for (CustomerSet set : instance.getSets()) {
+			ArrayList<Customer> members = new ArrayList<>(set);
+			tour.add(members.get(random.nextInt(members.size())));
+		}
+		Collections.shuffle(tour, random);
+		Integer expected = bruteForce(instance, tour, 0, instance.getFleet());
+		Solution split = Split.split(instance, tour);
+		if (expected == null) {
+			assertNull(split, () -> "should not split an infeasible tour");
+		} else {
+			assertNotNull(split, () -> "should split a feasible tour");
+			assertTrue(split.isValid(true), () -> "should be a valid solution");
+			assertEquals(expected.intValue(), split.getCost(), () -> "should find the optimal partition");
+			assertEquals(tour, Split.giantTour(split), () -> "should preserve the order of the tour");
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package gvrp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/* Copied in Project-02/src/test/java/mssc/TokenizerTest.java,
+ * as both projects build on their own: apply changes to both copies */
+class TokenizerTest {
+
+	static Tokenizer tokenize(String text) {
+		return new Tokenizer(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	@DisplayName("reading keywords and ints")
+	void testTokens() {
+		Tokenizer tokenizer = tokenize("NAME : A-n32-k5\r\n\tDIMENSION :  32\n-7 +8 2147483647 -2147483648 ");
+		tokenizer.expect("NAME");
+		tokenizer.expect(":");
+		assertEquals("A-n32-k5", tokenizer.next(), () -> "should read tokens between whitespace");
+		assertThrows(InputMismatchException.class, () -> tokenizer.expect("VEHICLES"),
+				() -> "should check keywords");
+		tokenizer.expect(":");
+		assertEquals(32, tokenizer.nextInt(), () -> "should read ints");
+		assertEquals(-7, tokenizer.nextInt(), () -> "with signs");
+		assertEquals(8, tokenizer.nextInt(), () -> "with signs");
+		assertEquals(Integer.MAX_VALUE, tokenizer.nextInt(), () -> "up to the limits");
+		assertEquals(Integer.MIN_VALUE, tokenizer.nextInt(), () -> "up to the limits");
+		assertFalse(tokenizer.hasNext(), () -> "should end with the input");
+		assertThrows(NoSuchElementException.class, () -> tokenizer.nextInt(),
+				() -> "and throw after that");
+	}
+
+	@Test
+	@DisplayName("rejecting malformed numbers")
+	void testMismatch() {
+		for (String token : new String[] {"2147483648", "1.5", "-", "x1", "1x"})
+			assertThrows(InputMismatchException.class, () -> tokenize(token).nextInt(),
+					() -> token + " should not be an int");
+		for (String token : new String[] {"-", ".", "1e", "1.2.3", "e5", "x"})
+			assertThrows(InputMismatchException.class, () -> tokenize(token).nextDouble(),
+					() -> token + " should not be a double");
+	}
+
+	@Test
+	@DisplayName("reading doubles")
+	void testDoubles() {
+		String [] tokens = {"0", "-0.0", "54.0", "-65.0", ".5", "1.", "+3.25", "1e3", "1.5E-7", "0.000123",
+				"123456789012345678901234567890", "0.1234567890123456789", "1e300", "4.9e-324", "NaN", "-Infinity"};
+		Random random = new Random(0);
+		StringBuilder sb = new StringBuilder(String.join(" ", tokens));
+		for (int i = 0; i < 1000; i++) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+			sb.append(' ').append(value);
+			sb.append(' ').append(String.format("%.6f", value));
+			sb.append(' ').append(random.nextInt());
+		}
+		Tokenizer tokenizer = tokenize(sb.toString());
+		for (String token : sb.toString().split(" ")) {
+			double expected = Double.parseDouble(token);
+			assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(tokenizer.nextDouble()),
+					() -> token + " should be read like Double.parseDouble does");
+		}
+	}
+
+}
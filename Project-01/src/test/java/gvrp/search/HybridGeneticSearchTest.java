@@ -0,0 +1,117 @@
+package gvrp.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.Customer;
+import gvrp.Instance;
+import gvrp.Solution;
+import gvrp.Tokenizer;
+import gvrp.construction.SolutionFactory;
+
+class HybridGeneticSearchTest {
+
+	static Instance loadInstance(String name) throws Exception {
+		Tokenizer sc = new Tokenizer(new File("data/GVRP3/" + name + ".gvrp"));
+		Instance instance = Instance.parse(sc, 20, false);
+		sc.close();
+		return instance;
+	}
+
+	/**
+	 * Local minima reached from perturbations of the greedy solution
+	 */
+	static ArrayList<Solution> localMinima(Instance instance, int count) {
+		ArrayList<Solution> solutions = new ArrayList<>();
+		for (long seed = 0; seed < count; seed++) {
+			LocalSearch ls = new LocalSearch(seed);
+			Solution solution = SolutionFactory.construct(instance, "greedy");
+			ls.perturbSolution(solution, 1 + (int) seed % (instance.getNumberOfCustomers() / 2));
+			ls.findLocalMinimum(solution);
+			solutions.add(solution);
+		}
+		return solutions;
+	}
+
+	@Test
+	@DisplayName("the ordered crossover of giant tours")
+	void testCrossover() throws Exception {
+		Instance instance = loadInstance("A-n32-k5-C11-V2");
+		HybridGeneticSearch hgs = new HybridGeneticSearch.Builder().build();
+		hgs.random = new Random(0);
+		ArrayList<Solution> parents = localMinima(instance, 6);
+		for (int i = 0; i < 100; i++) {
+			HybridGeneticSearch.Individual first = new HybridGeneticSearch.Individual(parents.get(i % 6));
+			HybridGeneticSearch.Individual second = new HybridGeneticSearch.Individual(parents.get((i + 1 + i / 6) % 6));
+			ArrayList<Customer> tour = hgs.crossover(first, second);
+			assertEquals(instance.getNumberOfSets(), tour.size(), () -> "should visit every set");
+			boolean [] visited = new boolean[instance.getNumberOfSets() + 1];
+			for (Customer c : tour) {
+				assertFalse(visited[c.getSet().getId()], () -> "should visit each set once");
+				visited[c.getSet().getId()] = true;
+			}
+			Solution child = HybridGeneticSearch.decode(instance, tour);
+			assertNotNull(child, () -> "should be decoded");
+			assertTrue(child.isValid(true), () -> "into a valid solution");
+		}
+	}
+
+	@Test
+	@DisplayName("the selection of survivors")
+	void testSurvivorSelection() throws Exception {
+		Instance instance = loadInstance("A-n32-k5-C11-V2");
+		int mu = 5, lambda = 7;
+		HybridGeneticSearch hgs = new HybridGeneticSearch.Builder()
+				.minPopulationSize(mu)
+				.generationSize(lambda)
+				.numOfElite(2)
+				.build();
+		int bestCost = Integer.MAX_VALUE;
+		for (Solution solution : localMinima(instance, mu + lambda)) {
+			hgs.addIndividual(new HybridGeneticSearch.Individual(solution));
+			bestCost = Math.min(bestCost, solution.getCost());
+		}
+		hgs.updateBiasedFitness();
+		hgs.selectSurvivors();
+		assertEquals(mu, hgs.population.size(), () -> "should shrink the population back to mu");
+		int survivorsBestCost = Integer.MAX_VALUE;
+		for (HybridGeneticSearch.Individual individual : hgs.population) {
+			survivorsBestCost = Math.min(survivorsBestCost, individual.cost);
+			assertEquals(hgs.population.size() - 1, individual.distances.size(),
+					() -> "should forget the distances to removed individuals");
+		}
+		assertEquals(bestCost, survivorsBestCost, () -> "should keep the best individual");
+	}
+
+	@Test
+	@DisplayName("the size of the population during the search")
+	void testPopulationSize() throws Exception {
+		Instance instance = loadInstance("A-n32-k5-C11-V2");
+		int mu = 4, lambda = 6;
+		HybridGeneticSearch hgs = new HybridGeneticSearch.Builder()
+				.minPopulationSize(mu)
+				.generationSize(lambda)
+				.build();
+		int [] numOfTests = {0};
+		Solution best = hgs.explore(SolutionFactory.construct(instance, "greedy"), (s) -> {
+			int size = hgs.population.size();
+			if (numOfTests[0]++ >= mu)
+				assertTrue(size >= mu && size < mu + lambda, () -> "should stay between mu and mu + lambda");
+			return numOfTests[0] < 100;
+		});
+		assertTrue(best.isValid(true), () -> "should return a valid solution");
+		for (HybridGeneticSearch.Individual individual : hgs.population)
+			assertTrue(best.getCost() <= individual.cost, () -> "which is the best individual");
+
+		Solution unexplored = hgs.explore(SolutionFactory.construct(instance, "greedy"), (s) -> false);
+		assertEquals(1, hgs.population.size(), () -> "should stop building the initial population when told to");
+		assertTrue(unexplored.isValid(true), () -> "and still return a valid solution");
+	}
+
+}
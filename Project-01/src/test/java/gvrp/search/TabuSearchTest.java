@@ -0,0 +1,116 @@
+package gvrp.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import gvrp.Customer;
+import gvrp.Instance;
+import gvrp.Solution;
+import gvrp.construction.SolutionFactory;
+
+class TabuSearchTest {
+
+	/**
+	 * Tabu search ready to make moves tabu, as at the start of an exploration
+	 */
+	static TabuSearch prepare(int minTenure, int maxTenure) {
+		TabuSearch ts = new TabuSearch.Builder().minTenure(minTenure).maxTenure(maxTenure).build();
+		ts.random = new Random(0);
+		ts.numOfRoutes = 4;
+		ts.tabuList = new ExpiringHashTable(maxTenure * 2);
+		ts.iteration = 1;
+		return ts;
+	}
+
+	@Test
+	@DisplayName("the tenure bounds")
+	void testTenureBounds() {
+		assertThrows(IllegalArgumentException.class, () -> new TabuSearch.Builder().minTenure(0).build(),
+				() -> "should reject tenures below 1");
+		assertThrows(IllegalArgumentException.class, () -> new TabuSearch.Builder().minTenure(10).maxTenure(5).build(),
+				() -> "should reject a maximum below the minimum");
+		assertDoesNotThrow(() -> new TabuSearch.Builder().minTenure(5).maxTenure(5).build(),
+				() -> "should accept equal bounds");
+	}
+
+	@Test
+	@DisplayName("tabu moves, aspiration and expiry")
+	void testTabu() throws Exception {
+		Instance instance = HybridGeneticSearchTest.loadInstance("A-n32-k5-C11-V2");
+		Customer ci = null, cj = null, other = null;
+		for (Customer c : instance.getCustomers()) {
+			if (c.getSet() == null) continue;
+			if (ci == null) ci = c;
+			else if (cj == null && c.getSet() == ci.getSet()) cj = c;
+			else if (other == null && c.getSet() != ci.getSet()) other = c;
+		}
+		final Customer c1 = ci, c2 = cj, c3 = other;
+		TabuSearch ts = prepare(3, 3);
+		ts.makeTabu(c1, 2);
+		assertTrue(ts.isTabu(c1, 2), () -> "should forbid the customer from entering the route");
+		assertTrue(ts.isTabu(c2, 2), () -> "and the other customers of its set");
+		assertFalse(ts.isTabu(c1, 1), () -> "but not from entering other routes");
+		assertFalse(ts.isTabu(c3, 2), () -> "nor customers of other sets");
+
+		/* Current cost 100, best cost 95 */
+		ts.numOfTies = 0;
+		ts.consider(TabuSearch.RELOCATE, 0, 0, 2, 0, -5, ts.isTabu(c1, 2), 100, 95);
+		assertEquals(0, ts.numOfTies, () -> "should reject tabu moves that don't lead to a new best");
+		ts.consider(TabuSearch.RELOCATE, 0, 0, 2, 0, -6, ts.isTabu(c1, 2), 100, 95);
+		assertEquals(1, ts.numOfTies, () -> "should accept tabu moves that lead to a new best (aspiration)");
+		assertEquals(-6, ts.moveDelta);
+		ts.numOfTies = 0;
+		ts.consider(TabuSearch.RELOCATE, 0, 0, 1, 0, 10, ts.isTabu(c1, 1), 100, 95);
+		assertEquals(1, ts.numOfTies, () -> "should accept worsening moves that are not tabu");
+
+		ts.iteration = 3;
+		assertTrue(ts.isTabu(c1, 2), () -> "should keep the move tabu during its tenure");
+		ts.iteration = 4;
+		assertFalse(ts.isTabu(c1, 2), () -> "and allow it again after its tenure");
+		ts.numOfTies = 0;
+		ts.consider(TabuSearch.RELOCATE, 0, 0, 2, 0, 10, ts.isTabu(c1, 2), 100, 95);
+		assertEquals(1, ts.numOfTies, () -> "as an admissible move");
+	}
+
+	@Test
+	@DisplayName("random tenures within bounds")
+	void testTenures() throws Exception {
+		Instance instance = HybridGeneticSearchTest.loadInstance("A-n32-k5-C11-V2");
+		Customer c = instance.getCustomers().get(1);
+		TabuSearch ts = prepare(2, 6);
+		boolean [] seen = new boolean[7];
+		for (int i = 0; i < 200; i++) {
+			ts.iteration = 1;
+			ts.makeTabu(c, 0);
+			int tenure = 0;
+			while (ts.isTabu(c, 0)) {
+				++tenure;
+				++ts.iteration;
+			}
+			assertTrue(tenure >= 2 && tenure <= 6, () -> "should keep tenures within bounds");
+			seen[tenure] = true;
+		}
+		for (int tenure = 2; tenure <= 6; tenure++)
+			assertTrue(seen[tenure], () -> "should draw every tenure within bounds");
+	}
+
+	@Test
+	@DisplayName("the exploration")
+	void testExplore() throws Exception {
+		Instance instance = HybridGeneticSearchTest.loadInstance("A-n32-k5-C11-V2");
+		Solution initial = SolutionFactory.construct(instance, "greedy");
+		int initialCost = initial.getCost();
+		int [] numOfIterations = {0};
+		Solution best = new TabuSearch.Builder().build().explore(initial, (s) -> {
+			assertTrue(s.isValid(true), () -> "should keep the current solution valid");
+			return ++numOfIterations[0] < 200;
+		});
+		assertTrue(best.isValid(true), () -> "should return a valid solution");
+		assertTrue(best.getCost() <= initialCost, () -> "not worse than the initial one");
+	}
+
+}
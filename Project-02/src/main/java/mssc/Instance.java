@@ -3,7 +3,6 @@ package mssc;
 import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
 import java.util.StringJoiner;
 
 public class Instance {
@@ -69,22 +68,29 @@ public class Instance {
 		return name;
 	}
 	
-	public static Instance parse(Scanner sc, String name, int numOfClusters) throws 
+	/**
+	 * Parses instance data from tokenizer
+	 * @param sc - tokenizer
+	 * @param name - instance name
+	 * @param numOfClusters - number of clusters
+	 * @return instance object or {@code null} if the data is invalid
+	 */
+	public static Instance parse(Tokenizer sc, String name, int numOfClusters) throws 
 			NoSuchElementException, IllegalStateException, InputMismatchException {
 		Builder builder = new Builder();
 		builder.setNumOfClusters(numOfClusters);
-		if (!sc.hasNextInt()) return null;
-		int numOfEntities = sc.nextInt();
-		if  (numOfClusters > numOfEntities) return null;
-		if (!sc.hasNextInt()) return null;
-		int dimensions = sc.nextInt();
-		for (int i = 0; i < numOfEntities; i++) {
-			Point entity = new Point(i+1, "e", dimensions); 
-			for (int j = 0; j < dimensions; j++) {
-				if (!sc.hasNextDouble()) return null;
-				entity.set(j, sc.nextDouble());
+		try {
+			int numOfEntities = sc.nextInt();
+			if  (numOfClusters > numOfEntities) return null;
+			int dimensions = sc.nextInt();
+			for (int i = 0; i < numOfEntities; i++) {
+				Point entity = new Point(i+1, "e", dimensions); 
+				for (int j = 0; j < dimensions; j++)
+					entity.set(j, sc.nextDouble());
+				builder.addEntity(entity);
 			}
-			builder.addEntity(entity);
+		} catch (NoSuchElementException e) {
+			return null; /* Missing or mismatched number */
 		}
 		builder.name(name);
 		try {
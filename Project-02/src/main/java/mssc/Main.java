@@ -251,11 +251,10 @@ public class Main {
 
 		System.out.println("instance \"" + instanceFile.getName() + "\"\tm = " + numberOfClusters);
 						
-		/* Try to create Scanner object */
-		Scanner sc = null;
+		/* Try to create Tokenizer object */
+		Tokenizer sc = null;
 		try {
-			sc = new Scanner(instanceFile);
-			sc.useLocale(Locale.US); /* Doubles uses dots */
+			sc = new Tokenizer(instanceFile); /* Doubles use dots */
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 			return false;
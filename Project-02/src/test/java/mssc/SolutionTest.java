@@ -5,10 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Paths;
-import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.Scanner;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -32,10 +30,9 @@ class SolutionTest {
 		File instanceFile = new File(instanceFilePath);
 		if (!instanceFile.exists())
 			fail("File "+instanceFilePath+" could not be opened!");
-		Scanner sc = null;
+		Tokenizer sc = null;
 		try {
-			sc = new Scanner(instanceFile);
-			sc.useLocale(Locale.US); /* Doubles uses dots */
+			sc = new Tokenizer(instanceFile); /* Doubles use dots */
 		} catch (FileNotFoundException e) {
 			fail("File "+instanceFilePath+" could not be scanned!");
 			e.printStackTrace();